@@ -3,7 +3,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
@@ -25,6 +27,13 @@ public class TestServer {
     private static final int PORT = 2629;
     private static final int TIMEOUT_MS = 2000;
 
+    // --- SERVEUR DE TEST ---
+    // Les tests qui ont besoin d'une autre configuration (horloges courtes, ...)
+    // lancent leur propre serveur sur TEST_PORT avec les classes compilées du serveur :
+    //     java -Dtictactoe.classes=tictactoe TestServer
+    private static final int TEST_PORT = 2639;
+    private static final String SERVER_CLASSES = System.getProperty("tictactoe.classes", "tictactoe");
+
     // --- OPTIONS DE DÉBOGAGE ---
     private static final boolean DEBUG_MODE = true;
 
@@ -57,6 +66,8 @@ public class TestServer {
         testSinglePlayerGameLogic();
         testMultiplayerGameLogic();
         testAdvancedConcurrencyAndState();
+        testBinaryProtocol();
+        testConfiguredServer();
 
         printHeader("RÉSUMÉ DES TESTS", "=");
         System.out.println("  Tests réussis : " + ANSI_GREEN + testsPassed + ANSI_RESET);
@@ -121,6 +132,7 @@ public class TestServer {
         testMultiplayerFullGame_X_Wins();
         testMultiplayerFullGame_Draw();
         testMultiplayerOpponentQuit();
+        testMultiplayerPushMode();
     }
 
     private void testAdvancedConcurrencyAndState() {
@@ -128,6 +140,22 @@ public class TestServer {
         testMultiplayerThirdPlayerConnection();
         testRestartGameOnSameSocket();
         testPipelinedCommands();
+        testUpdateWaitWakesOnOpponentJoin();
+        testUpdateWaitInBotGame();
+    }
+
+    private void testBinaryProtocol() {
+        printHeader("Suite 6: Protocole Binaire", "-");
+        testBinaryBotGame();
+        testBinaryMultiplayerRoles();
+    }
+
+    private void testConfiguredServer() {
+        printHeader("Suite 7: Serveur de Test Configuré", "-");
+        testTurnClockForfeit();
+        testGameClockForfeit();
+        testNonReadingClientDisconnect();
+        testThrottledClientDisconnect();
     }
 
     // =========================================================================================
@@ -529,6 +557,39 @@ public class TestServer {
         }
     }
 
+    private void testMultiplayerPushMode() {
+        String testName = "Mode PUSH en multijoueur";
+        String rationale = "Avec PUSH ON le serveur envoie la grille après chaque coup de l'adversaire, sans UPDATE ; sans PUSH ou après PUSH OFF il n'envoie rien.";
+        try (Socket sX = connect(); Socket sO = connect()) {
+            sendMessage(sX, "START PLAYER\r\n\r\n");
+            assertEquals("PLAYER X\r\n\r\n", readResponse(sX), testName + " (Setup P1)", "Le joueur 1 doit être X.");
+            sendMessage(sO, "START PLAYER\r\n\r\n");
+            assertEquals("PLAYER O\r\n\r\n", readResponse(sO), testName + " (Setup P2)", "Le joueur 2 doit être O.");
+
+            sendMessage(sO, "PUSH ON\r\n\r\n");
+            assertEquals("PUSH ON\r\n\r\n", readResponse(sO), testName + " (PUSH ON)", rationale);
+
+            // le coup de X arrive chez O sans qu'il le demande
+            sendMessage(sX, "PUT 0 0\r\n\r\n");
+            readResponse(sX);
+            assertEquals("X  \r\n   \r\n   \r\n\r\n", readResponse(sO), testName + " (grille poussée à O)", rationale);
+
+            // X n'a pas demandé PUSH ON, il ne reçoit rien quand O joue
+            sendMessage(sO, "PUT 1 1\r\n\r\n");
+            readResponse(sO);
+            assertEquals(null, readResponse(sX), testName + " (rien sans PUSH)", rationale);
+
+            // après PUSH OFF, O ne reçoit plus rien
+            sendMessage(sO, "PUSH OFF\r\n\r\n");
+            assertEquals("PUSH OFF\r\n\r\n", readResponse(sO), testName + " (PUSH OFF)", rationale);
+            sendMessage(sX, "PUT 0 1\r\n\r\n");
+            readResponse(sX);
+            assertEquals(null, readResponse(sO), testName + " (rien après PUSH OFF)", rationale);
+        } catch (IOException e) {
+            fail(testName, "grille poussée", "Exception: " + e.getMessage(), rationale);
+        }
+    }
+
     private void testMultiplayerThirdPlayerConnection() {
         try (Socket s1 = connect(); Socket s2 = connect()) {
             sendMessage(s1, "START PLAYER\r\n\r\n");
@@ -603,6 +664,282 @@ public class TestServer {
         }
     }
 
+    private void testUpdateWaitWakesOnOpponentJoin() {
+        String testName = "UPDATE en attente réveillé par l'arrivée de l'adversaire";
+        String rationale = "Un 'UPDATE <n>' en attente doit recevoir la grille dès que la partie commence, sans attendre la fin du délai.";
+        try (Socket sX = connect(); Socket sO = connect()) {
+            sendMessage(sX, "START PLAYER\r\n\r\n");
+            assertEquals("PLAYER X\r\n\r\n", readResponse(sX), testName + " (Setup P1)", "Le joueur 1 doit être X.");
+
+            // X attend un changement de la grille vide, la partie n'a pas encore d'adversaire
+            sendMessage(sX, "UPDATE 0\r\n\r\n");
+            Thread.sleep(200);
+
+            sendMessage(sO, "START PLAYER\r\n\r\n");
+            assertEquals("PLAYER O\r\n\r\n", readResponse(sO), testName + " (Setup P2)", "Le joueur 2 doit être O.");
+
+            String response = readResponse(sX);
+            assertNotNull(response, testName, rationale);
+            assertTrue(isGridResponse(response), testName, "La réponse doit contenir une grille. " + rationale);
+        } catch (IOException e) {
+            fail(testName, "grid", "Exception: " + e.getMessage(), rationale);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void testUpdateWaitInBotGame() {
+        String testName = "UPDATE <n> dans une partie contre le bot";
+        String rationale = "Le bot a déjà joué dans la réponse du PUT, personne ne changera la grille : 'UPDATE <n>' doit répondre tout de suite.";
+        try (Socket s = connect()) {
+            sendMessage(s, "START BOT X\r\n\r\n");
+            readResponse(s);
+            sendMessage(s, "PUT 1 1\r\n\r\n");
+            readResponse(s);
+
+            // deux coups sont joués : celui de X et celui du bot
+            sendMessage(s, "UPDATE 2\r\n\r\n");
+            String response = readResponse(s);
+            assertTrue(isGridResponse(response), testName, rationale);
+        } catch (IOException e) {
+            fail(testName, "grid", "Exception: " + e.getMessage(), rationale);
+        }
+    }
+
+    private void testBinaryBotGame() {
+        String testName = "Partie binaire contre le bot";
+        String rationale = "Après l'octet 0xB7 la connexion parle le protocole binaire : une grille tient en 4 octets (0x10, statut et Bitboard).";
+        try (Socket s = connect(); Socket text = connect()) {
+            // 0xB7 puis START BOT X contre le bot aléatoire
+            sendBytes(s, new byte[] {(byte) 0xB7, 0x01, 0x00});
+            byte[] grid = readBytes(s, 4);
+            assertEquals("10000000", toHex(grid), testName + " (START BOT)", "START BOT X doit répondre la grille vide. " + rationale);
+
+            // PUT 1 1 : X prend la case 4, le bot répond dans la même grille
+            sendBytes(s, new byte[] {0x03, 1, 1});
+            grid = readBytes(s, 4);
+            assertTrue(grid != null && grid[0] == 0x10, testName + " (PUT)", "PUT doit répondre une grille. " + rationale);
+            if (grid != null) {
+                int board = ((grid[1] & 0x03) << 16) | ((grid[2] & 0xFF) << 8) | (grid[3] & 0xFF);
+                assertEquals(1 << 4, board & 0x1FF, testName + " (case de X)", "Seule la case 4 doit être à X. " + rationale);
+                assertEquals(1, Integer.bitCount(board >>> 9), testName + " (coup du bot)", "Le bot doit avoir joué un coup. " + rationale);
+            }
+
+            // une case déjà prise reçoit une réponse d'un octet
+            sendBytes(s, new byte[] {0x03, 1, 1});
+            grid = readBytes(s, 1);
+            assertTrue(grid != null && grid[0] != 0x10, testName + " (case occupée)", "Une case occupée ne doit pas renvoyer de grille. " + rationale);
+
+            // un client texte connecté en même temps n'est pas touché
+            sendMessage(text, "START BOT X\r\n\r\n");
+            assertEquals("   \r\n   \r\n   \r\n\r\n", readResponse(text), testName + " (client texte)", "Un client texte doit toujours recevoir du texte. " + rationale);
+        } catch (IOException e) {
+            fail(testName, "grilles binaires", "Exception: " + e.getMessage(), rationale);
+        }
+    }
+
+    private void testBinaryMultiplayerRoles() {
+        String testName = "Partie binaire entre deux joueurs";
+        String rationale = "START PLAYER (0x02) répond PLAYER (0x11) suivi de 0 pour X et 1 pour O.";
+        try (Socket sX = connect(); Socket sO = connect()) {
+            sendBytes(sX, new byte[] {(byte) 0xB7, 0x02});
+            assertEquals("1100", toHex(readBytes(sX, 2)), testName + " (P1)", rationale);
+            sendBytes(sO, new byte[] {(byte) 0xB7, 0x02});
+            assertEquals("1101", toHex(readBytes(sO, 2)), testName + " (P2)", rationale);
+
+            // X joue en 0 0, O voit le coup avec UPDATE (0x04)
+            sendBytes(sX, new byte[] {0x03, 0, 0});
+            assertEquals("10000001", toHex(readBytes(sX, 4)), testName + " (PUT de X)", "La grille doit contenir le X en case 0. " + rationale);
+            sendBytes(sO, new byte[] {0x04});
+            assertEquals("10000001", toHex(readBytes(sO, 4)), testName + " (UPDATE de O)", "O doit voir le coup de X. " + rationale);
+        } catch (IOException e) {
+            fail(testName, "PLAYER X / PLAYER O", "Exception: " + e.getMessage(), rationale);
+        }
+    }
+
+    private void testTurnClockForfeit() {
+        String testName = "Temps du tour écoulé";
+        String rationale = "Avec -Dtictactoe.turnTimeout=1000, le joueur qui ne joue pas en 1 s perd : la grille se termine par 'X TIMEOUT' ou 'O TIMEOUT'.";
+        Process server = null;
+        try {
+            server = startTestServer("tictactoe.turnTimeout=1000");
+            try (Socket sX = connect(TEST_PORT); Socket sO = connect(TEST_PORT)) {
+                sendMessage(sX, "START PLAYER\r\n\r\n");
+                assertEquals("PLAYER X\r\n\r\n", readResponse(sX), testName + " (Setup P1)", "Le joueur 1 doit être X.");
+                sendMessage(sO, "START PLAYER\r\n\r\n");
+                assertEquals("PLAYER O\r\n\r\n", readResponse(sO), testName + " (Setup P2)", "Le joueur 2 doit être O.");
+
+                // X ne joue pas, O attend un coup qui ne viendra pas
+                sendMessage(sO, "UPDATE 0\r\n\r\n");
+                String response = readResponse(sO);
+                assertTrue(response != null && response.endsWith("X TIMEOUT\r\n\r\n"), testName + " (X perd)", rationale);
+
+                // la partie est finie, X ne peut plus jouer
+                sendMessage(sX, "PUT 0 0\r\n\r\n");
+                response = readResponse(sX);
+                assertTrue(response != null && !isGridResponse(response), testName + " (coup refusé)", "Un coup après la fin de la partie doit être refusé. " + rationale);
+            }
+
+            try (Socket sX = connect(TEST_PORT); Socket sO = connect(TEST_PORT)) {
+                sendMessage(sX, "START PLAYER\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sO, "START PLAYER\r\n\r\n");
+                readResponse(sO);
+
+                // X joue, c'est au tour de O qui ne joue pas
+                sendMessage(sX, "PUT 0 0\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sX, "UPDATE 1\r\n\r\n");
+                String response = readResponse(sX);
+                assertTrue(response != null && response.endsWith("O TIMEOUT\r\n\r\n"), testName + " (O perd)", rationale);
+            }
+        } catch (IOException e) {
+            fail(testName, "X TIMEOUT / O TIMEOUT", "Exception: " + e.getMessage(), rationale);
+        } finally {
+            stopTestServer(server);
+        }
+    }
+
+    private void testGameClockForfeit() {
+        String testName = "Temps de la partie écoulé";
+        String rationale = "Avec -Dtictactoe.gameTimeout=1500, un joueur qui a déjà utilisé 800 ms n'a plus que 700 ms pour son tour, même si le tour dure 1 s.";
+        Process server = null;
+        try {
+            server = startTestServer("tictactoe.turnTimeout=1000", "tictactoe.gameTimeout=1500");
+            try (Socket sX = connect(TEST_PORT); Socket sO = connect(TEST_PORT)) {
+                sendMessage(sX, "START PLAYER\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sO, "START PLAYER\r\n\r\n");
+                readResponse(sO);
+
+                Thread.sleep(800);
+                sendMessage(sX, "PUT 0 0\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sO, "PUT 1 1\r\n\r\n");
+                readResponse(sO);
+
+                // X n'a plus que 700 ms, il perd avant la fin de son tour de 1 s
+                long start = System.currentTimeMillis();
+                sendMessage(sO, "UPDATE 2\r\n\r\n");
+                String response = readResponse(sO);
+                long elapsed = System.currentTimeMillis() - start;
+                assertTrue(response != null && response.endsWith("X TIMEOUT\r\n\r\n"), testName + " (X perd)", rationale);
+                assertTrue(elapsed < 950, testName + " (avant la fin du tour)", rationale + " Temps mesuré : " + elapsed + " ms.");
+            }
+        } catch (IOException e) {
+            fail(testName, "X TIMEOUT", "Exception: " + e.getMessage(), rationale);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopTestServer(server);
+        }
+    }
+
+    private void testNonReadingClientDisconnect() {
+        String testName = "Client qui ne lit jamais";
+        String rationale = "Avec -Dtictactoe.writeTimeout=1000, un client dont l'écriture est bloquée depuis 1 s est déconnecté, même si ses pushes pourraient être ignorés.";
+        Process server = null;
+        try {
+            server = startTestServer("tictactoe.writeTimeout=1000");
+            try (Socket sX = connect(TEST_PORT); Socket sO = connect(TEST_PORT)) {
+                sendMessage(sX, "PUSH ON\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sX, "START PLAYER\r\n\r\n");
+                readResponse(sX);
+                sendMessage(sO, "START PLAYER\r\n\r\n");
+                readResponse(sO);
+                sendMessage(sX, "PUT 0 0\r\n\r\n");
+                readResponse(sX);
+
+                // X envoie des UPDATE sans jamais lire les réponses, jusqu'à ce que le serveur ne puisse plus écrire
+                byte[] flood = "UPDATE\r\n\r\n".repeat(4096).getBytes("UTF-8");
+                Thread flooder = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2048; i++) {
+                            sX.getOutputStream().write(flood);
+                        }
+                    } catch (IOException e) {
+                        // la connexion est coupée par le serveur
+                    }
+                });
+                flooder.setDaemon(true);
+                flooder.start();
+                Thread.sleep(3000);
+
+                // le coup de O doit être poussé à X, dont l'écriture est bloquée
+                sendMessage(sO, "PUT 1 1\r\n\r\n");
+                assertTrue(isGridResponse(readResponse(sO)), testName + " (PUT de O)", "O doit pouvoir jouer pendant que X ne lit pas. " + rationale);
+
+                flooder.join(5000);
+                assertTrue(!flooder.isAlive(), testName + " (X déconnecté)", rationale);
+
+                Thread.sleep(500);
+                sendMessage(sO, "UPDATE\r\n\r\n");
+                String response = readResponse(sO);
+                assertTrue(response != null && response.contains("OPPONENT QUIT"), testName + " (OPPONENT QUIT)", "O doit apprendre que X est parti. " + rationale);
+            }
+
+            // les autres clients sont toujours servis
+            try (Socket s = connect(TEST_PORT)) {
+                sendMessage(s, "START BOT X\r\n\r\n");
+                assertEquals("   \r\n   \r\n   \r\n\r\n", readResponse(s), testName + " (autre client)", "Un autre client doit toujours être servi. " + rationale);
+            }
+        } catch (IOException e) {
+            fail(testName, "X déconnecté", "Exception: " + e.getMessage(), rationale);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopTestServer(server);
+        }
+    }
+
+    private void testThrottledClientDisconnect() {
+        String testName = "Déconnexion d'un client limité par le débit";
+        String rationale = "Avec -Dtictactoe.rateLimitLoopback=true, une commande au-delà de la limite reçoit 'TOO MANY REQUESTS' ; la fermeture de la connexion n'est pas une commande : le client doit être retiré et son adversaire prévenu.";
+        Process server = null;
+        try {
+            server = startTestServer("tictactoe.rateLimitLoopback=true");
+            try (Socket sX = connect(TEST_PORT); Socket sO = connect(TEST_PORT)) {
+                sendMessage(sO, "PUSH ON\r\n\r\n");
+                readResponse(sO);
+                sendMessage(sX, "START PLAYER\r\n\r\n");
+                assertEquals("PLAYER X\r\n\r\n", readResponse(sX), testName + " (Setup P1)", "Le joueur 1 doit être X.");
+                sendMessage(sO, "START PLAYER\r\n\r\n");
+                assertEquals("PLAYER O\r\n\r\n", readResponse(sO), testName + " (Setup P2)", "Le joueur 2 doit être O.");
+
+                // X envoie des commandes en rafale jusqu'à ce que le serveur les refuse
+                sX.getOutputStream().write("UPDATE\r\n\r\n".repeat(1000).getBytes("UTF-8"));
+                sX.getOutputStream().flush();
+
+                boolean throttled = false;
+                ByteArrayOutputStream received = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                try {
+                    int count;
+                    while (!throttled && (count = sX.getInputStream().read(buffer)) > 0) {
+                        received.write(buffer, 0, count);
+                        throttled = received.toString("UTF-8").contains("TOO MANY REQUESTS\r\n\r\n");
+                    }
+                } catch (SocketTimeoutException e) {
+                    // plus de réponse, aucune commande n'a été refusée
+                }
+                assertTrue(throttled, testName + " (TOO MANY REQUESTS)", rationale);
+
+                // X ferme sa connexion alors que sa limite est atteinte
+                sX.shutdownOutput();
+
+                String response = readResponse(sO);
+                assertNotNull(response, testName, rationale);
+                assertTrue(isGridResponse(response), testName, "L'adversaire doit recevoir la grille. " + rationale);
+                assertTrue(response != null && response.contains("OPPONENT QUIT"), testName, "Le statut doit être 'OPPONENT QUIT'. " + rationale);
+            }
+        } catch (IOException e) {
+            fail(testName, "grid + OPPONENT QUIT", "Exception: " + e.getMessage(), rationale);
+        } finally {
+            stopTestServer(server);
+        }
+    }
+
     // =========================================================================================
     // MOTEURS ET UTILITAIRES
     // =========================================================================================
@@ -617,11 +954,66 @@ public class TestServer {
     }
 
     private Socket connect() throws IOException {
-        Socket socket = new Socket(HOST, PORT);
+        return connect(PORT);
+    }
+
+    private Socket connect(int port) throws IOException {
+        Socket socket = new Socket(HOST, port);
         socket.setSoTimeout(TIMEOUT_MS);
         return socket;
     }
 
+    /**
+     * lance un serveur sur TEST_PORT avec les propriétés données (sans le -D)
+     * et attend qu'il accepte les connexions
+     */
+    private Process startTestServer(String... properties) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(SERVER_CLASSES);
+        command.add("-Dtictactoe.port=" + TEST_PORT);
+        for (String property: properties) {
+            command.add("-D" + property);
+        }
+        command.add("TictactoeServer");
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline && process.isAlive()) {
+            try {
+                new Socket(HOST, TEST_PORT).close();
+                return process;
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        process.destroy();
+        throw new IOException("Le serveur de test ne démarre pas (classes : " + SERVER_CLASSES + ", -Dtictactoe.classes=...)");
+    }
+
+    private void stopTestServer(Process server) {
+        if (server == null) {
+            return;
+        }
+        server.destroy();
+        try {
+            server.waitFor(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void sendMessage(Socket socket, String message) throws IOException {
         if (DEBUG_MODE) {
             System.out.println(ANSI_BLUE + "➡️ [DEBUG] Envoi:\n" + ANSI_RESET + formatOutput(message));
@@ -669,6 +1061,48 @@ public class TestServer {
         return finalData;
     }
 
+    private void sendBytes(Socket socket, byte[] data) throws IOException {
+        if (DEBUG_MODE) {
+            System.out.println(ANSI_BLUE + "➡️ [DEBUG] Envoi (binaire): " + ANSI_RESET + toHex(data));
+        }
+        socket.getOutputStream().write(data);
+        socket.getOutputStream().flush();
+    }
+
+    /**
+     * lit exactement count octets, ou renvoie null si le serveur ne les envoie pas à temps
+     */
+    private byte[] readBytes(Socket socket, int count) throws IOException {
+        byte[] data = new byte[count];
+        int read = 0;
+        try {
+            while (read < count) {
+                int n = socket.getInputStream().read(data, read, count - read);
+                if (n < 0) {
+                    return null;
+                }
+                read += n;
+            }
+        } catch (SocketTimeoutException e) {
+            return null;
+        }
+        if (DEBUG_MODE) {
+            System.out.println(ANSI_PURPLE + "⬅️ [DEBUG] Reçu (binaire): " + ANSI_RESET + toHex(data));
+        }
+        return data;
+    }
+
+    private String toHex(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b: data) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
     private char[][] parseGrid(String response) {
         char[][] board = {
             {
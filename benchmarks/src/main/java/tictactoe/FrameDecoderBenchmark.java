@@ -0,0 +1,112 @@
+package tictactoe;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of cutting the bytes of one read in messages, like Client.run()
+ * and NioServerClient.onReadable() do with TictactoeFrameDecoder
+ * the read contains some pipelined PUT, given at once or in small chunks
+ * (the decoder is kept between the calls, like for one connection)
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameDecoderBenchmark {
+    /**
+     * number of messages in the read
+    */
+    @Param({"1", "16"})
+    public int messages;
+
+    /**
+     * size of the chunks given to the decoder, 0 for the whole read
+    */
+    @Param({"0", "3"})
+    public int chunk;
+
+    private byte[] textRead;
+
+    private byte[] binaryRead;
+
+    private TictactoeFrameDecoder textDecoder;
+
+    private TictactoeFrameDecoder binaryDecoder;
+
+    /**
+     * sum of the sizes of the decoded messages, returned so the JIT keep the work
+    */
+    private int decoded;
+
+    private final ClientEventListener listener = new ClientEventListener() {
+        @Override
+        public void onEvent(String data) {
+            decoded += data.length();
+        }
+
+        @Override
+        public void onResponse(TictactoeResponse response) {
+            decoded += response.getLength();
+        }
+    };
+
+    @Setup
+    public void setup() throws TictactoeBadResponseException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        for (int i = 0; i < messages; i++) {
+            text.writeBytes(("PUT " + (i % 3) + " " + (i / 3 % 3) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            binary.writeBytes(new byte[] {TictactoeBinary.PUT, (byte) (i % 3), (byte) (i / 3 % 3)});
+        }
+
+        textRead = text.toByteArray();
+        binaryRead = binary.toByteArray();
+
+        textDecoder = new TictactoeFrameDecoder();
+        binaryDecoder = new TictactoeFrameDecoder();
+
+        // the magic byte is only the first byte of the connection
+        binaryDecoder.decode(new byte[] {TictactoeBinary.MAGIC}, 0, 1, listener);
+    }
+
+    @Benchmark
+    public int decodeText() throws TictactoeBadResponseException {
+        return decode(textDecoder, textRead);
+    }
+
+    @Benchmark
+    public int decodeBinary() throws TictactoeBadResponseException {
+        return decode(binaryDecoder, binaryRead);
+    }
+
+    private int decode(TictactoeFrameDecoder decoder, byte[] read) throws TictactoeBadResponseException {
+        decoded = 0;
+
+        if (chunk == 0) {
+            decoder.decode(read, 0, read.length, listener);
+        } else {
+            for (int offset = 0; offset < read.length; offset += chunk) {
+                decoder.decode(read, offset, Math.min(chunk, read.length - offset), listener);
+            }
+        }
+
+        return decoded;
+    }
+}
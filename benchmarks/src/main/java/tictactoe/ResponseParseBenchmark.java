@@ -0,0 +1,104 @@
+package tictactoe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of TictactoeResponse for each shape of message of the protocol
+ * and of the same requests in the binary protocol
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParseBenchmark {
+    @Param({
+        "START_BOT", "START_BOT_LEVEL", "START_PLAYER", "PUT", "UPDATE", "UPDATE_WAIT",
+        "QUIT", "GRID", "GRID_STATUS", "WRONG", "LONG_WRONG"
+    })
+    public String shape;
+
+    private String message;
+
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "START_BOT":
+                message = "START BOT X\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.START_BOT, 0};
+                break;
+            case "START_BOT_LEVEL":
+                message = "START BOT O P\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.START_BOT, 5};
+                break;
+            case "START_PLAYER":
+                message = "START PLAYER\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.START_PLAYER};
+                break;
+            case "PUT":
+                message = "PUT 1 2\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.PUT, 1, 2};
+                break;
+            case "UPDATE":
+                message = "UPDATE\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.UPDATE};
+                break;
+            case "UPDATE_WAIT":
+                message = "UPDATE 4\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.UPDATE_WAIT, 4};
+                break;
+            case "QUIT":
+                message = "QUIT\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.QUIT};
+                break;
+            case "GRID":
+                message = "X O\r\n O \r\nX  \r\n\r\n";
+                frame = new byte[] {TictactoeBinary.UPDATE};
+                break;
+            case "GRID_STATUS":
+                message = "XOX\r\nOXO\r\nX  \r\nX WON\r\n\r\n";
+                frame = new byte[] {TictactoeBinary.UPDATE};
+                break;
+            case "WRONG":
+                message = "COMMANDE INVALIDE\r\n\r\n";
+                frame = new byte[] {0x7F};
+                break;
+            default:
+                message = "A".repeat(2048) + "\r\n\r\n";
+                frame = new byte[] {0x7F};
+                break;
+        }
+    }
+
+    /**
+     * a refused message cost the exception too
+    */
+    @Benchmark
+    public Object parseText() {
+        try {
+            return new TictactoeResponse(message);
+        } catch (TictactoeBadResponseException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public TictactoeResponse parseBinary() {
+        return TictactoeBinary.toResponse(frame);
+    }
+}
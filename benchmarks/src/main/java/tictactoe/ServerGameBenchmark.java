@@ -0,0 +1,153 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * cost of the game logic of the server: a whole game with ServerGame.play()
+ * (which call updateGameState() and encode the grid at each move),
+ * getGridState() and a game against each bot (botPlay())
+ * the players are ServerClient on channels which are never connected,
+ * nothing is sent to them
+ *
+ * the games run without clocks (tictactoe.turnTimeout=0): with them each move
+ * cancels a timeout of the shared TimingWheel and schedules another one,
+ * the benchmark would measure the timer and not the game, and the clock
+ * of runningGame would end it during the measure
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dtictactoe.turnTimeout=0")
+@State(Scope.Thread)
+public class ServerGameBenchmark {
+    /**
+     * the moves of a draw, X and O in turn
+    */
+    private static final int[][] DRAW = {
+        {0, 0}, {1, 1}, {0, 1}, {0, 2}, {2, 0}, {1, 0}, {1, 2}, {2, 1}, {2, 2}
+    };
+
+    private SocketChannel channelX;
+
+    private SocketChannel channelO;
+
+    private ServerClient playerX;
+
+    private ServerClient playerO;
+
+    /**
+     * a game in the middle of the draw, for getGridState()
+    */
+    private ServerGame runningGame;
+
+    @Setup
+    public void setup() throws IOException, ServerGameException {
+        channelX = SocketChannel.open();
+        channelO = SocketChannel.open();
+        playerX = new ServerClient(channelX);
+        playerO = new ServerClient(channelO);
+        playerX.setClientType(ClientType.X);
+        playerO.setClientType(ClientType.O);
+
+        runningGame = newGame();
+
+        for (int i = 0; i < 5; i++) {
+            runningGame.play(i % 2 == 0 ? playerX : playerO, DRAW[i][0], DRAW[i][1]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channelX.close();
+        channelO.close();
+    }
+
+    private ServerGame newGame() throws ServerGameException {
+        ServerGame game = new ServerGame();
+        game.setPlayerX(playerX);
+        game.setPlayerO(playerO);
+        return game;
+    }
+
+    /**
+     * a whole game of two players, 9 moves
+    */
+    @Benchmark
+    public ServerGame playGame() throws ServerGameException {
+        ServerGame game = newGame();
+
+        for (int i = 0; i < DRAW.length; i++) {
+            game.play(i % 2 == 0 ? playerX : playerO, DRAW[i][0], DRAW[i][1]);
+        }
+
+        return game;
+    }
+
+    /**
+     * a refused move does not change the game
+    */
+    @Benchmark
+    public TictactoeReply refusedMove() {
+        return runningGame.play(playerX, 0, 0);
+    }
+
+    @Benchmark
+    public String getGridState() {
+        return runningGame.getGridState();
+    }
+
+    @Benchmark
+    public byte[] getTextGridState() {
+        return runningGame.getTextGridState();
+    }
+
+    /**
+     * the bot of playBotGame(), the other benchmarks do not depend on it
+    */
+    @State(Scope.Thread)
+    public static class Bot {
+        @Param({"R", "H", "P"})
+        public String level;
+
+        private BotStrategy strategy;
+
+        @Setup
+        public void setup() {
+            strategy = BotStrategy.fromString(level);
+        }
+    }
+
+    /**
+     * a whole game against the bot, the player takes the first free cell
+     * each accepted move is followed by botPlay()
+    */
+    @Benchmark
+    public ServerGame playBotGame(Bot bot) throws ServerGameException {
+        ServerGame game = new ServerGame();
+        game.setAsBotgame();
+        game.setBotStrategy(bot.strategy);
+        game.setPlayerX(playerX);
+
+        for (int cell = 0; cell < 9 && !game.isFinished(); cell++) {
+            game.play(playerX, cell / 3, cell % 3);
+        }
+
+        return game;
+    }
+}
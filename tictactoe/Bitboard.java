@@ -0,0 +1,135 @@
+/**
+ * Bitboard contains the bit operations on a tictactoe grid
+ * a grid is stored in a single int:
+ * the bits 0 to 8 are the cells of X and the bits 9 to 17 the cells of O
+ * the cell (row, col) is the bit row * 3 + col of each half
+ *
+ *  0 | 1 | 2
+ *  3 | 4 | 5
+ *  6 | 7 | 8
+*/
+public abstract class Bitboard {
+    /**
+     * the 9 cells of one player
+    */
+    public static final int FULL = 0x1FF;
+
+    /**
+     * shift of the cells of O in the board
+    */
+    public static final int O_SHIFT = 9;
+
+    /**
+     * the 8 ways to win: 3 rows, 3 columns and 2 diagonals
+    */
+    public static final int[] WIN_MASKS = {
+        0b000_000_111, 0b000_111_000, 0b111_000_000,
+        0b001_001_001, 0b010_010_010, 0b100_100_100,
+        0b100_010_001, 0b001_010_100
+    };
+
+    /**
+     * return the cells of X
+     * @param board
+     * @return
+    */
+    public static int xCells(int board) {
+        return board & FULL;
+    }
+
+    /**
+     * return the cells of O
+     * @param board
+     * @return
+    */
+    public static int oCells(int board) {
+        return (board >>> O_SHIFT) & FULL;
+    }
+
+    /**
+     * return the cells of the given player
+     * @param board
+     * @param type
+     * @return
+    */
+    public static int cells(int board, ClientType type) {
+        return type == ClientType.X ? xCells(board) : oCells(board);
+    }
+
+    /**
+     * return the empty cells
+     * @param board
+     * @return
+    */
+    public static int emptyCells(int board) {
+        return ~(xCells(board) | oCells(board)) & FULL;
+    }
+
+    /**
+     * return the board with the cell given to the player
+     * @param board
+     * @param cell index of the cell (0-8)
+     * @param type
+     * @return
+    */
+    public static int play(int board, int cell, ClientType type) {
+        return board | (1 << (type == ClientType.X ? cell : cell + O_SHIFT));
+    }
+
+    /**
+     * return true if the cells contains a full line
+     * @param cells cells of one player
+     * @return
+    */
+    public static boolean hasLine(int cells) {
+        for (int mask : WIN_MASKS) {
+            if ((cells & mask) == mask) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * return true if there is no empty cell
+     * @param board
+     * @return
+    */
+    public static boolean isFull(int board) {
+        return emptyCells(board) == 0;
+    }
+
+    /**
+     * return the player on the cell or null if the cell is empty
+     * @param board
+     * @param cell
+     * @return
+    */
+    public static ClientType get(int board, int cell) {
+        if ((xCells(board) & (1 << cell)) != 0) {
+            return ClientType.X;
+        } else if ((oCells(board) & (1 << cell)) != 0) {
+            return ClientType.O;
+        }
+
+        return null;
+    }
+
+    /**
+     * return the index of the n-th empty cell (n starts at 0)
+     * @param board
+     * @param n
+     * @return
+    */
+    public static int nthEmptyCell(int board, int n) {
+        int empty = emptyCells(board);
+
+        for (int i = 0; i < n; i++) {
+            // remove the lowest empty cell
+            empty &= empty - 1;
+        }
+
+        return Integer.numberOfTrailingZeros(empty);
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BotBenchmark measure the cost of a move for each BotStrategy
+ * many threads play bot games at the same time, like a server
+ * with thousands of bot games, the bot plays against a random player
+ *
+ * java BotBenchmark [threads] [games per thread]
+*/
+public class BotBenchmark {
+    /**
+     * games played before the measure so the JIT has compiled the strategies
+    */
+    private static final int WARMUP_GAMES = 200_000;
+
+    /**
+     * number of bot moves timed together
+    */
+    private static final int BATCH = 4096;
+
+    /**
+     * sum of the chosen cells, written so the JIT can not remove the bot calls
+    */
+    private static volatile long sink = 0;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        // the table is computed once, it is not a part of the cost of a move
+        long start = System.nanoTime();
+        int size = BotMoveTable.size();
+        System.out.println(">>> BotMoveTable: " + size + " grids in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println(">>> " + threads + " threads, " + games + " games per thread");
+
+        String[] levels = {"R", "H", "P"};
+
+        for (String level : levels) {
+            BotStrategy bot = BotStrategy.fromString(level);
+
+            playGames(bot, 1, WARMUP_GAMES, new AtomicLong(), new AtomicLong());
+
+            AtomicLong moves = new AtomicLong();
+            AtomicLong nanos = new AtomicLong();
+
+            long wall = System.nanoTime();
+            playGames(bot, threads, games, moves, nanos);
+            wall = System.nanoTime() - wall;
+
+            System.out.println(String.format(
+                ">>> %-22s %8.1f ns/move %12.0f moves/s",
+                bot.getClass().getSimpleName(),
+                (double) nanos.get() / moves.get(),
+                moves.get() * 1e9 / wall
+            ));
+        }
+    }
+
+    /**
+     * play the games on the given number of threads
+     * and add the number of bot moves and the time spent in the bot
+     *
+     * a move costs a few nanoseconds, about the price of System.nanoTime() itself,
+     * so a move is never timed alone: the grids the bot has to answer are kept
+     * in a batch while the games are played, then the whole batch is given to
+     * the bot between two nanoTime() and the time is divided by the size of the batch
+     * @param bot
+     * @param threads
+     * @param games games per thread
+     * @param moves
+     * @param nanos
+     * @throws InterruptedException
+    */
+    private static void playGames(BotStrategy bot, int threads, int games, AtomicLong moves, AtomicLong nanos) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                int[] boards = new int[BATCH];
+                ClientType[] players = new ClientType[BATCH];
+                int queued = 0;
+                long count = 0;
+                long time = 0;
+
+                for (int g = 0; g < games; g++) {
+                    int board = 0;
+                    // the bot alternates between X and O
+                    ClientType botType = (g & 1) == 0 ? ClientType.X : ClientType.O;
+                    ClientType player = ClientType.X;
+
+                    while (!isEnded(board)) {
+                        int cell;
+
+                        if (player == botType) {
+                            // the game goes on with the move of the bot, the same grid is timed later in its batch
+                            cell = bot.chooseCell(board, player);
+                            boards[queued] = board;
+                            players[queued] = player;
+                            queued++;
+
+                            if (queued == BATCH) {
+                                time += timeBatch(bot, boards, players, queued);
+                                count += queued;
+                                queued = 0;
+                            }
+                        } else {
+                            cell = RandomBotStrategy.INSTANCE.chooseCell(board, player);
+                        }
+
+                        board = Bitboard.play(board, cell, player);
+                        player = player == ClientType.X ? ClientType.O : ClientType.X;
+                    }
+                }
+
+                if (queued > 0) {
+                    time += timeBatch(bot, boards, players, queued);
+                    count += queued;
+                }
+
+                moves.addAndGet(count);
+                nanos.addAndGet(time);
+                done.countDown();
+            }).start();
+        }
+
+        done.await();
+    }
+
+    /**
+     * give the first length grids of the batch to the bot and return the time it took
+     * the chosen cells are added in sink so the JIT can not remove the calls
+     * @param bot
+     * @param boards
+     * @param players
+     * @param length
+     * @return the time spent in the bot in nanoseconds
+    */
+    private static long timeBatch(BotStrategy bot, int[] boards, ClientType[] players, int length) {
+        int cells = 0;
+        long before = System.nanoTime();
+
+        for (int i = 0; i < length; i++) {
+            cells += bot.chooseCell(boards[i], players[i]);
+        }
+
+        long time = System.nanoTime() - before;
+        sink += cells;
+
+        return time;
+    }
+
+    /**
+     * return true if a player has won or the grid is full
+     * @param board
+     * @return
+    */
+    private static boolean isEnded(int board) {
+        return Bitboard.hasLine(Bitboard.xCells(board))
+            || Bitboard.hasLine(Bitboard.oCells(board))
+            || Bitboard.isFull(board);
+    }
+}
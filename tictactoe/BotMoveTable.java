@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * BotMoveTable contains the best move of every grid which can be reached
+ * in a game of tictactoe (5478 grids, counting the empty one and the ended ones)
+ * the table is computed once when the class is loaded, with a minimax
+ * which remember the grids already solved, then the bot only has to read
+ * the move of the current grid, like the random bot it cost nothing
+ *
+ * the grids are indexed by their bitboard (see Bitboard), 2^18 entries of one byte
+*/
+public abstract class BotMoveTable {
+    /**
+     * value of the entries which have not been computed
+     * (grids which can not be reached in a real game)
+    */
+    private static final byte UNKNOWN = Byte.MIN_VALUE;
+
+    /**
+     * best cell to play for each grid, -1 if the game is ended
+    */
+    private static final byte[] MOVES = new byte[1 << (2 * Bitboard.O_SHIFT)];
+
+    /**
+     * score of each grid for player X
+     * > 0 X will win, < 0 O will win, 0 draw
+     * a quicker win has a bigger score
+    */
+    private static final byte[] SCORES = new byte[1 << (2 * Bitboard.O_SHIFT)];
+
+    /**
+     * number of grids which have been solved
+    */
+    private static int reachable = 0;
+
+    static {
+        Arrays.fill(SCORES, UNKNOWN);
+        solve(0);
+    }
+
+    /**
+     * return the player who has to play on this grid
+     * X always start so if both have the same number of cells it is X
+     * @param board
+     * @return
+    */
+    public static ClientType toPlay(int board) {
+        int xCount = Integer.bitCount(Bitboard.xCells(board));
+        int oCount = Integer.bitCount(Bitboard.oCells(board));
+
+        return xCount == oCount ? ClientType.X : ClientType.O;
+    }
+
+    /**
+     * minimax with memory, compute the score and the best move
+     * of the grid and of all the grids which can follow it
+     * @param board
+     * @return the score of the grid for player X
+    */
+    private static int solve(int board) {
+        if (SCORES[board] != UNKNOWN) {
+            return SCORES[board];
+        }
+
+        reachable++;
+
+        int empty = Bitboard.emptyCells(board);
+        int filled = 9 - Integer.bitCount(empty);
+        int score;
+        int best = -1;
+
+        if (Bitboard.hasLine(Bitboard.xCells(board))) {
+            score = 10 - filled;
+        } else if (Bitboard.hasLine(Bitboard.oCells(board))) {
+            score = filled - 10;
+        } else if (empty == 0) {
+            score = 0;
+        } else {
+            ClientType player = toPlay(board);
+            score = player == ClientType.X ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+
+            for (int cells = empty; cells != 0; cells &= cells - 1) {
+                int cell = Integer.numberOfTrailingZeros(cells);
+                int childScore = solve(Bitboard.play(board, cell, player));
+
+                if (player == ClientType.X ? childScore > score : childScore < score) {
+                    score = childScore;
+                    best = cell;
+                }
+            }
+        }
+
+        SCORES[board] = (byte) score;
+        MOVES[board] = (byte) best;
+
+        return score;
+    }
+
+    /**
+     * return the best cell to play on this grid (0-8)
+     * or -1 if the game is ended or the grid can not be reached
+     * @param board
+     * @return
+    */
+    public static int bestMove(int board) {
+        if (SCORES[board] == UNKNOWN) {
+            return -1;
+        }
+
+        return MOVES[board];
+    }
+
+    /**
+     * return the number of grids in the table
+     * @return
+    */
+    public static int size() {
+        return reachable;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * BotStrategy is the way a bot choose its move
+ * a strategy does not keep any state, the same instance
+ * is shared by all the bot games of the server
+*/
+public interface BotStrategy {
+    /**
+     * choose the cell to play
+     * the grid has at least one empty cell
+     * @param board the grid as a bitboard (see Bitboard)
+     * @param player the player of the bot
+     * @return the index of an empty cell (0-8)
+    */
+    int chooseCell(int board, ClientType player);
+
+    /**
+     * return the strategy of the level given in START BOT
+     * R random, H heuristic, P perfect
+     * if the level is not valid return null
+     * @param level
+     * @return
+    */
+    static BotStrategy fromString(String level) {
+        if (level.equalsIgnoreCase("R")) {
+            return RandomBotStrategy.INSTANCE;
+        } else if (level.equalsIgnoreCase("H")) {
+            return HeuristicBotStrategy.INSTANCE;
+        } else if (level.equalsIgnoreCase("P")) {
+            return PerfectBotStrategy.INSTANCE;
+        } else {
+            return null;
+        }
+    }
+}
@@ -4,13 +4,19 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Client represent etheir a player we want to play and try to connect to the server
  * from is command line or a player that is connected to the server
  * and is waiting for an opponent 
+ *
+ * the listening loop is a Runnable, it can be started on its own thread
+ * with start() or given to an executor (for example virtual threads on the server)
 */
-public abstract class Client extends Thread {
+public abstract class Client implements Runnable {
     /*
      * Type of client (Player or Spectator)
     */
@@ -54,13 +60,34 @@ public abstract class Client extends Thread {
     protected boolean running = false;
 
     /**
-     * Temporary string to store the message received from the server
-     * this will be useful to store the message received from the server
-     * if the message is not complete (not ending with \r\n)
-     * we will store it in this variable and wait for the next message
-     * to complete the message
+     * Decoder which store the part of a message which is not complete yet
+     * (not ending with \r\n\r\n) and give the complete messages to onFrame
+     * it reuse the same buffer for all the messages
     */
-    protected String temp = "";
+    protected final TictactoeFrameDecoder decoder = new TictactoeFrameDecoder();
+
+    /**
+     * listener given to the decoder, each message is handled
+     * by onFrame so a bad message does not stop the next ones
+    */
+    protected final ClientEventListener frameListener = new ClientEventListener() {
+        @Override
+        public void onEvent(String data) {
+            onFrame(data);
+        }
+
+        @Override
+        public void onResponse(TictactoeResponse response) {
+            onFrame(response);
+        }
+
+        @Override
+        public void onOversized() {
+            if (myListener != null && isRunning()) {
+                onBadResponse();
+            }
+        }
+    };
 
 
     /**
@@ -71,6 +98,19 @@ public abstract class Client extends Thread {
     */
     protected boolean isClientSever = false;
 
+    /**
+     * lock of the output stream, the messages of the server can be sent
+     * by the thread of the client and by the one of its opponent (push)
+     * so two messages must not be mixed
+    */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /**
+     * Thread created by start() if the client
+     * is not run by an executor
+    */
+    private Thread thread;
+
     public Client(Socket client) throws ClientGetStreamException, TictactoeTimeoutException {
         this.client = client;
         /**
@@ -87,11 +127,37 @@ public abstract class Client extends Thread {
         }
     }
 
+    /**
+     * Create a client over a non blocking channel
+     * in this case there is no stream, the subclass have to
+     * read and write the channel by itself (see NioServerClient)
+     * @param channel
+    */
+    protected Client(SocketChannel channel) {
+        this.client = channel.socket();
+        this.out = null;
+        this.in = null;
+        this.reader = null;
+    }
+
+    /**
+     * Start the listening loop on a new platform thread
+     * @throws IllegalThreadStateException if the client is already started
+    */
+    public synchronized void start() {
+        if (this.thread != null) {
+            throw new IllegalThreadStateException();
+        }
+
+        this.thread = new Thread(this);
+        this.thread.start();
+    }
+
     public void setClientType(ClientType type) {
         this.type = type;
     }
 
-    private void setRunning(boolean running) {
+    protected void setRunning(boolean running) {
         this.running = running;
     }
 
@@ -102,12 +168,23 @@ public abstract class Client extends Thread {
      * @throws Exception
     */
     protected void sendMessage(String message) throws ClientSendException {
+        sendBytes(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send bytes using the output stream of the client
+     * the text messages are sent with it and the binary protocol use it directly
+     * @param data
+     * @throws ClientSendException
+    */
+    protected void sendBytes(byte[] data) throws ClientSendException {
         if(!this.running) {
             throw new ClientSendException();
         }
 
+        sendLock.lock();
         try {
-            out.write(message.getBytes("UTF-8"));
+            out.write(data);
             out.flush();
         } catch (IOException e) {
             /**
@@ -115,11 +192,50 @@ public abstract class Client extends Thread {
              * this will be catch in the run method to stop the client
             */
             throw new ClientSendException();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Start a batch: the messages sent from now can be kept
+     * until endBatch() and written in one time
+     * a client which send many requests in one packet (pipelining)
+     * receive its replies in one write and not one write per reply
+     * only the server keeps them (see ServerClient), here the messages are written at once
+    */
+    protected void beginBatch() {}
+
+    /**
+     * End the batch and write all the messages kept since beginBatch()
+     * @throws ClientSendException if the messages can not be written
+    */
+    protected void endBatch() throws ClientSendException {}
+
+    /**
+     * Read the bytes available on the input stream of the client
+     * @param buffer
+     * @return the number of bytes read
+     * @throws ClientReceiveException if the connection is closed or broken
+    */
+    protected int receiveBytes(byte[] buffer) throws ClientReceiveException {
+        try {
+            int count = in.read(buffer);
+
+            if (count < 0) {
+                throw new IOException("Connection closed by server");
+            }
+
+            return count;
+        } catch (IOException e) {
+            throw new ClientReceiveException();
         }
     }
 
     /**
      * Receive a message using the input stream of the client
+     * it read a single line, run() does not use it but read
+     * the stream with receiveBytes() and the decoder
      * this method throw a ClientReceiveException if it fails to receive the message
      * @return
      * @throws ClientReceiveException
@@ -163,87 +279,121 @@ public abstract class Client extends Thread {
     @Override
     public void run() {
         setRunning(true);
+
+        // one buffer for all the reads of the connection
+        byte[] buffer = new byte[TictactoeConst.READ_BUFFER_SIZE];
+
         while (running) {
             try {
-                String message = this.receiveMessage();
-                String goodEnding =  "".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE);
-
-                if(message == null) {
-                    continue;
-                }
+                int count = this.receiveBytes(buffer);
 
-                String totalMessage = temp.concat(message);
-
-                if (isClientSever && totalMessage.equals("\\s+".concat(goodEnding))) {
-                    try {
-                        this.sendMessage("WRONG".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
-                        continue;
-                    } catch (ClientSendException ex) {}
-                } else if (totalMessage != null && totalMessage.contains(goodEnding)) {
-                    String[] parts = totalMessage.split(goodEnding);
-
-                    if (!totalMessage.endsWith(goodEnding)) {
-                        temp = parts[parts.length - 1];
-                        parts = totalMessage.substring(0, totalMessage.length() - temp.length()).split(goodEnding);
-                    } else {
-                        temp = "";
-                    } 
-
-                    if (myListener != null) {
-                        for(String part : parts) {
-                            myListener.onEvent(part.concat(goodEnding));
-                        }
-                    }
-                } else {
-                    temp = totalMessage;
+                // all the replies to the messages of this read are written together
+                beginBatch();
+                try {
+                    decoder.decode(buffer, 0, count, frameListener);
+                } finally {
+                    endBatch();
                 }
             }
             catch (TictactoeBadResponseException e) {
-                if (isRunning() && isClientSever) {
-                    /**
-                     * if we receive a bad response from the server
-                     * we send a WRONG message to the client
-                     * and continue listening for messages
-                     * if we fail to send the message we stop the client
-                     * this will be catch below
-                    */
-                    StringBuilder request = new StringBuilder("WRONG");
-                    request.append(TictactoeConst.END_OF_MESSAGE);
-                    request.append(TictactoeConst.END_OF_MESSAGE);
-                    try {
-                        this.sendMessage(request.toString());
-                        System.err.println("[Client Bad Response Exception (resolved)]");
-                        continue;
-                    } catch (ClientSendException ex) {}
-                } 
-
-
-                setRunning(false);
-                Thread.currentThread().interrupt();
-
-                System.err.println("[Client Bad Response Exception (client)]");
-            } 
-            catch (ClientReceiveException e) {
-                /**
-                 * if we fail to receive a message from the server
-                 * we stop the client   
-                 * 
-                */
-                StringBuilder request = new StringBuilder("QUIT");
-                request.append("\r\n");
+                // onFrame already handle the bad responses
+            }
+            catch (ClientReceiveException | ClientSendException e) {
+                onConnectionLost();
+            }
+        }
+    }
 
-                try {
-                    if (this.myListener != null) {
-                        this.myListener.onEvent(request.toString());
-                    }
-                } catch (TictactoeBadResponseException ex) {
-                    System.err.println("[ClientReceiveException Bad Response Exception (Client)]");
-                }
+    /**
+     * Handle a complete message received by the client
+     * the message is given to the listener
+     * @param message
+    */
+    protected void onFrame(String message) {
+        if (myListener == null || !isRunning()) {
+            return;
+        }
+
+        try {
+            myListener.onEvent(message);
+        } catch (TictactoeBadResponseException e) {
+            onBadResponse();
+        }
+    }
+
+    /**
+     * Handle a message of the binary protocol, it is already decoded
+     * @param response
+    */
+    protected void onFrame(TictactoeResponse response) {
+        if (myListener == null || !isRunning()) {
+            return;
+        }
+
+        try {
+            myListener.onResponse(response);
+        } catch (TictactoeBadResponseException e) {
+            onBadResponse();
+        }
+    }
+
+    /**
+     * the listener has refused the message
+    */
+    protected void onBadResponse() {
+        if (isClientSever) {
+            /**
+             * if we receive a bad response from the server
+             * we send a WRONG message to the client
+             * and continue listening for messages
+             * if we fail to send the message the connection is lost
+            */
+            try {
+                this.sendWrong();
+                warn("[Client Bad Response Exception (resolved)]");
+            } catch (ClientSendException ex) {
+                onConnectionLost();
+            }
+            return;
+        }
+
+        setRunning(false);
+        warn("[Client Bad Response Exception (client)]");
+    }
+
+    /**
+     * print a warning on the error output
+     * the server overrides it to use its log (see ServerClient),
+     * the player program does not start the thread of the log
+     * @param message
+    */
+    protected void warn(String message) {
+        System.err.println(message);
+    }
 
-                setRunning(false);
-                Thread.currentThread().interrupt();
+    /**
+     * send WRONG to the other side
+     * @throws ClientSendException
+    */
+    protected void sendWrong() throws ClientSendException {
+        this.sendBytes(TictactoeReply.WRONG.getTextBytes());
+    }
+
+    /**
+     * if we fail to receive a message from the server
+     * we stop the client, the listener is told with onClosed()
+     * so the server can remove the client
+    */
+    protected void onConnectionLost() {
+        try {
+            if (this.myListener != null) {
+                this.myListener.onClosed();
             }
+        } catch (TictactoeBadResponseException ex) {
+            warn("[ClientReceiveException Bad Response Exception (Client)]");
         }
+
+        setRunning(false);
     }
 
     /**
@@ -255,6 +405,20 @@ public abstract class Client extends Thread {
     }
     
 
+    /**
+     * Close the client socket at once, without sending what is still queued
+     * used when the other side may not read anymore: a write
+     * blocked on this socket fails instead of waiting forever
+    */
+    public void abort() {
+        try {
+            setRunning(false);
+            this.client.close();
+        } catch (IOException e) {
+            //In this case the socket is probably already closed
+        }
+    }
+
     /**
      * Close the client socket
      * if it fails to close the socket it catch the exception and print an error message
@@ -6,4 +6,34 @@
 @FunctionalInterface
 public interface ClientEventListener {
     void onEvent(String data) throws TictactoeBadResponseException;
-}
\ No newline at end of file
+
+    /**
+     * called with a message which is already decoded
+     * (a request of the binary protocol, see TictactoeBinary)
+     * by default the message is refused
+     * @param response
+     * @throws TictactoeBadResponseException
+    */
+    default void onResponse(TictactoeResponse response) throws TictactoeBadResponseException {
+        throw new TictactoeBadResponseException();
+    }
+
+    /**
+     * called at the end of a message which was bigger than
+     * TictactoeConst.MAX_FRAME_SIZE, its bytes have been dropped
+     * by default the message is refused
+     * @throws TictactoeBadResponseException
+    */
+    default void onOversized() throws TictactoeBadResponseException {
+        throw new TictactoeBadResponseException();
+    }
+
+    /**
+     * called when the connection is lost, it is not a message of the other side
+     * by default the listener receive a QUIT like if it had been sent
+     * @throws TictactoeBadResponseException
+    */
+    default void onClosed() throws TictactoeBadResponseException {
+        onEvent("QUIT".concat(TictactoeConst.END_OF_MESSAGE));
+    }
+}
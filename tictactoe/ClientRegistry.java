@@ -0,0 +1,48 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ClientRegistry keep the clients connected to the server by id
+ * it is a ConcurrentHashMap, the map is cut in many bins with their own lock
+ * so the threads which accept and disconnect clients do not wait
+ * for each other, and removing a client does not scan a list
+*/
+public class ClientRegistry {
+    /**
+     * connected clients by id
+    */
+    private final ConcurrentHashMap<Long, ServerClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * add a new client to the registry
+     * @param client
+    */
+    public void add(ServerClient client) {
+        clients.put(client.getId(), client);
+    }
+
+    /**
+     * remove the client
+     * @param client
+     * @return true if the client was in the registry
+    */
+    public boolean remove(ServerClient client) {
+        return clients.remove(client.getId(), client);
+    }
+
+    /**
+     * return true if the client is still connected
+     * @param client
+     * @return
+    */
+    public boolean contains(ServerClient client) {
+        return clients.get(client.getId()) == client;
+    }
+
+    /**
+     * return the number of connected clients
+     * @return
+    */
+    public int size() {
+        return clients.size();
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GameRegistry keep the games which are still alive on the server
+ * a game is registered when it is created and evicted when it is terminated
+ * (finished or aborted) and its last grid has been sent, so the server
+ * does not keep all the games played since it started
+ * the players keep a reference to their last game, so an UPDATE
+ * after the end still get the final grid
+ *
+ * the games are kept in a ConcurrentHashMap so the games created and
+ * removed by different threads do not wait for one global lock
+ *
+ * the number of games by state and type is kept in gauges: a registered game
+ * tells the registry when its state changes (see ServerGame.reportState())
+ * so the metrics and the logs never go through the games and their locks
+*/
+public class GameRegistry {
+    /**
+     * alive games by id
+    */
+    private final ConcurrentHashMap<Long, ServerGame> games = new ConcurrentHashMap<>();
+
+    /**
+     * alive games by state and type, the index is given by gauge()
+    */
+    private final LongAdder[] gauges = new LongAdder[GameState.values().length * 2];
+
+    public GameRegistry() {
+        for (int i = 0; i < gauges.length; i++) {
+            gauges[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * add a new game to the registry
+     * the game is counted before it is visible, so an evict() which
+     * happens at the same time always finds it in the gauges
+     * @param game
+    */
+    public void register(ServerGame game) {
+        game.attach(this);
+        games.put(game.getId(), game);
+    }
+
+    /**
+     * remove the game if it is terminated
+     * @param game
+     * @return true if the game has been removed
+    */
+    public boolean evict(ServerGame game) {
+        if (!game.getState().isTerminated()) {
+            return false;
+        }
+
+        if (!games.remove(game.getId(), game)) {
+            return false;
+        }
+
+        game.detach();
+        return true;
+    }
+
+    /**
+     * return the number of alive games
+     * @return
+    */
+    public int size() {
+        return games.size();
+    }
+
+    /**
+     * return the number of alive games in the given state
+     * @param state
+     * @return
+    */
+    public long count(GameState state) {
+        return count(state, true) + count(state, false);
+    }
+
+    /**
+     * return the number of alive games in the given state
+     * against the bot or between two players
+     * @param state
+     * @param bot
+     * @return
+    */
+    public long count(GameState state, boolean bot) {
+        return gauge(state, bot).sum();
+    }
+
+    /**
+     * a registered game has changed of state, called with the lock of the game
+     * from is null when the game is registered and to is null when it is evicted
+     * @param from
+     * @param to
+     * @param bot
+    */
+    void moved(GameState from, GameState to, boolean bot) {
+        if (from != null) {
+            gauge(from, bot).decrement();
+        }
+
+        if (to != null) {
+            gauge(to, bot).increment();
+        }
+    }
+
+    private LongAdder gauge(GameState state, boolean bot) {
+        return gauges[state.ordinal() * 2 + (bot ? 1 : 0)];
+    }
+
+    /**
+     * return a short summary of the registry for the logs
+    */
+    @Override
+    public String toString() {
+        return "games waiting=" + count(GameState.WAITING)
+            + " running=" + count(GameState.RUNNING)
+            + " total=" + size();
+    }
+}
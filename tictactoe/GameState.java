@@ -0,0 +1,21 @@
+/**
+ * Lifecycle of a ServerGame
+ * WAITING  a two player game with only the player X
+ * RUNNING  the players can play
+ * FINISHED the game has a winner, is a draw or a player ran out of time
+ * ABORTED  a player left before the end of the game
+*/
+public enum GameState {
+    WAITING,
+    RUNNING,
+    FINISHED,
+    ABORTED;
+
+    /**
+     * return true if the game can not change anymore
+     * @return
+    */
+    public boolean isTerminated() {
+        return this == FINISHED || this == ABORTED;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * GridWaiter is a client which sent "UPDATE <moves>" while the grid
+ * has still this number of moves, instead of answering the same grid
+ * the request is parked in the game until a move is played
+ * or the game ends, then the new grid is sent
+ *
+ * a waiter does not hold any thread: the game wake it up from the thread
+ * which played the move, and the timer of the server (TimingWheel)
+ * send the grid when nothing happened before the timeout
+*/
+public class GridWaiter {
+    private final ServerClient client;
+
+    private final ServerGame game;
+
+    /**
+     * the grid is sent only once, by the move or by the timeout
+    */
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    private TimingWheel.Timeout timeout;
+
+    private GridWaiter(ServerClient client, ServerGame game) {
+        this.client = client;
+        this.game = game;
+    }
+
+    /**
+     * create a waiter and start its timeout
+     * @param client
+     * @param game
+     * @param timeoutMillis
+     * @return
+    */
+    public static GridWaiter park(ServerClient client, ServerGame game, long timeoutMillis) {
+        GridWaiter waiter = new GridWaiter(client, game);
+        waiter.timeout = TimingWheel.SHARED.schedule(waiter::expire, timeoutMillis);
+        return waiter;
+    }
+
+    /**
+     * the grid has changed, send it to the client
+    */
+    public void complete() {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+
+        timeout.cancel();
+
+        // the client may have started another game since
+        if (game.equals(client.getGame())) {
+            try {
+                client.sendGrid(game);
+            } catch (ClientSendException e) {
+                // the client is gone, his own connection will tell it to the server
+            }
+        }
+    }
+
+    /**
+     * nothing happened before the timeout
+     * the client receive the same grid and can ask again
+    */
+    private void expire() {
+        game.removeWaiter(this);
+        complete();
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * the bot plays like a beginner who knows the rules:
+ * 1. win if it can
+ * 2. block the opponent if he can win
+ * 3. take the center
+ * 4. take a corner
+ * 5. take any cell
+ * it does not look further, so it can be beaten with a fork
+*/
+public class HeuristicBotStrategy implements BotStrategy {
+    public static final HeuristicBotStrategy INSTANCE = new HeuristicBotStrategy();
+
+    /**
+     * the center cell
+    */
+    private static final int CENTER = 1 << 4;
+
+    /**
+     * the four corner cells
+    */
+    private static final int CORNERS = (1 << 0) | (1 << 2) | (1 << 6) | (1 << 8);
+
+    @Override
+    public int chooseCell(int board, ClientType player) {
+        ClientType opponent = player == ClientType.X ? ClientType.O : ClientType.X;
+        int empty = Bitboard.emptyCells(board);
+
+        int cell = completingCell(Bitboard.cells(board, player), empty);
+        if (cell >= 0) {
+            return cell;
+        }
+
+        cell = completingCell(Bitboard.cells(board, opponent), empty);
+        if (cell >= 0) {
+            return cell;
+        }
+
+        if ((empty & CENTER) != 0) {
+            return 4;
+        }
+
+        int choices = (empty & CORNERS) != 0 ? empty & CORNERS : empty;
+        int index = ThreadLocalRandom.current().nextInt(Integer.bitCount(choices));
+
+        for (int i = 0; i < index; i++) {
+            choices &= choices - 1;
+        }
+
+        return Integer.numberOfTrailingZeros(choices);
+    }
+
+    /**
+     * return the empty cell which complete a line of the player
+     * or -1 if there is none
+     * @param cells cells of the player
+     * @param empty empty cells of the grid
+     * @return
+    */
+    private static int completingCell(int cells, int empty) {
+        for (int mask : Bitboard.WIN_MASKS) {
+            int missing = mask & ~cells;
+
+            // only one cell is missing and it is empty
+            if (Integer.bitCount(missing) == 1 && (missing & empty) != 0) {
+                return Integer.numberOfTrailingZeros(missing);
+            }
+        }
+
+        return -1;
+    }
+}
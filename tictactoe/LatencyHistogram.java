@@ -0,0 +1,145 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LatencyHistogram count durations (in nanoseconds) without any lock
+ * like an HDR histogram the buckets are log-linear: each power of two
+ * is cut in SUB_BUCKETS buckets, so a value is known with about 12%
+ * of precision from 1 ns to MAX_VALUE (about 68 s), bigger values
+ * are counted in the last bucket
+ *
+ * recording a value is one atomic increment and two LongAdder adds
+*/
+public class LatencyHistogram {
+    /**
+     * number of bits of the sub buckets, 8 buckets by power of two
+    */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * biggest value which has its own bucket
+    */
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * return the bucket of the value
+     * the values under SUB_BUCKETS have one bucket each, then the power of
+     * two of the value and its SUB_BITS next bits give the bucket
+     * @param value
+     * @return
+    */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        int shift = power - SUB_BITS;
+
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * return the biggest value of the bucket
+     * @param bucket
+     * @return
+    */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket >> SUB_BITS) - 1;
+        long first = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+
+        return first + (1L << shift) - 1;
+    }
+
+    /**
+     * record a duration
+     * @param nanos
+    */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.min(nanos, MAX_VALUE)));
+        count.increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * return the number of recorded values
+     * @return
+    */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * return the sum of the recorded values
+     * @return
+    */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * return the number of values smaller than the limit
+     * it is exact when the limit is a power of two (the first value of a bucket)
+     * @param limit
+     * @return
+    */
+    public long countBelow(long limit) {
+        int end = limit > MAX_VALUE ? BUCKETS : bucketOf(limit);
+        long result = 0;
+
+        for (int i = 0; i < end; i++) {
+            result += counts.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * return the value under which there is the given part of the values
+     * (the upper bound of its bucket), 0 if nothing has been recorded
+     * the buckets are read one by one while other threads record
+     * so the result is an approximation of the current state
+     * @param part between 0 and 1
+     * @return
+    */
+    public long valueAt(double part) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(part * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+
+        return MAX_VALUE;
+    }
+}
@@ -0,0 +1,410 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LoadGenerator measure a running server with the real protocol
+ * each connection plays games in a loop, a new connection for each game:
+ * a bot game (START BOT with a random player and bot) or a game against
+ * another connection of the generator (START PLAYER, the turns of the
+ * opponent are waited with the long poll "UPDATE <moves>")
+ *
+ * at the end it print the moves per second, the connections per second
+ * and the percentiles of the time between a PUT and its reply
+ * run it twice on a fresh server, the first run also warm up the JIT
+ *
+ * java LoadGenerator [connections] [seconds] [bot games %] [host]
+*/
+public class LoadGenerator {
+    /**
+     * longer than the long poll of the server (TictactoeConst.UPDATE_WAIT_TIMEOUT)
+    */
+    private static final int SOCKET_TIMEOUT = 30_000;
+
+    private static final String[] BOTS = {"R", "H", "P"};
+
+    /**
+     * sockets which are open, they are closed at the end
+     * to stop the players which are waiting for an opponent
+    */
+    private static final Set<Socket> OPEN_SOCKETS = ConcurrentHashMap.newKeySet();
+
+    private static volatile long deadline;
+
+    public static void main(String[] args) throws InterruptedException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int botPercent = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        String host = args.length > 3 ? args[3] : TictactoeConst.HOST;
+
+        System.out.println(">>> " + connections + " connections, " + seconds + " s, "
+            + botPercent + "% bot games, " + host + ":" + TictactoeConst.PORT);
+
+        Worker[] workers = new Worker[connections];
+        Thread[] threads = new Thread[connections];
+        long start = System.nanoTime();
+        deadline = start + seconds * 1_000_000_000L;
+
+        for (int i = 0; i < connections; i++) {
+            workers[i] = new Worker(host, botPercent, new Random(2629 + i));
+            threads[i] = new Thread(workers[i], "load-" + i);
+            threads[i].start();
+        }
+
+        Thread.sleep(seconds * 1000L);
+
+        for (Socket socket : OPEN_SOCKETS) {
+            close(socket);
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        report(workers, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * print the result of all the connections
+     * @param workers
+     * @param elapsed seconds
+    */
+    private static void report(Worker[] workers, double elapsed) {
+        long botGames = 0;
+        long playerGames = 0;
+        long moves = 0;
+        long connects = 0;
+        long errors = 0;
+        long refusedPuts = 0;
+        int latencyCount = 0;
+
+        for (Worker worker : workers) {
+            botGames += worker.botGames;
+            playerGames += worker.playerGames;
+            moves += worker.moves;
+            connects += worker.connects;
+            errors += worker.errors;
+            refusedPuts += worker.refusedPuts;
+            latencyCount += worker.latencyCount;
+        }
+
+        long[] latencies = new long[latencyCount];
+        int index = 0;
+
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, index, worker.latencyCount);
+            index += worker.latencyCount;
+        }
+
+        Arrays.sort(latencies);
+
+        System.out.println(">>> games: " + (botGames + playerGames) + " (bot " + botGames + ", player " + playerGames + "), errors: " + errors);
+        System.out.println(String.format(">>> moves: %d (%.0f moves/s), refused PUT: %d", moves, moves / elapsed, refusedPuts));
+        System.out.println(String.format(">>> connections: %d (%.0f connections/s)", connects, connects / elapsed));
+
+        if (latencies.length > 0) {
+            System.out.println(String.format(
+                ">>> PUT latency (us): p50 %.1f  p99 %.1f  p999 %.1f  max %.1f",
+                percentile(latencies, 0.50) / 1e3,
+                percentile(latencies, 0.99) / 1e3,
+                percentile(latencies, 0.999) / 1e3,
+                latencies[latencies.length - 1] / 1e3
+            ));
+        }
+    }
+
+    /**
+     * return the value under which there is the given part of the sorted values
+     * @param sorted
+     * @param part between 0 and 1
+     * @return
+    */
+    private static long percentile(long[] sorted, double part) {
+        int index = (int) Math.ceil(part * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static boolean isOver() {
+        return System.nanoTime() - deadline >= 0;
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * one connection of the generator, it plays games until the end
+     * the counters are only read by main after the thread has ended
+    */
+    private static class Worker implements Runnable {
+        private final String host;
+
+        private final int botPercent;
+
+        private final Random random;
+
+        private long botGames = 0;
+
+        private long playerGames = 0;
+
+        private long moves = 0;
+
+        private long connects = 0;
+
+        private long errors = 0;
+
+        /**
+         * PUT refused because the opponent was not there yet, they are not in the latencies
+        */
+        private long refusedPuts = 0;
+
+        /**
+         * time of each PUT which played a move, in nanoseconds
+        */
+        private long[] latencies = new long[1024];
+
+        private int latencyCount = 0;
+
+        private Socket socket;
+
+        private InputStream in;
+
+        private OutputStream out;
+
+        /**
+         * the reply we are reading, reused for all the replies
+        */
+        private final ByteArrayOutputStream reply = new ByteArrayOutputStream();
+
+        Worker(String host, int botPercent, Random random) {
+            this.host = host;
+            this.botPercent = botPercent;
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            while (!isOver()) {
+                try {
+                    connect();
+
+                    if (random.nextInt(100) < botPercent) {
+                        playBotGame();
+                    } else {
+                        playPlayerGame();
+                    }
+
+                    send("QUIT");
+                } catch (IOException e) {
+                    // at the end the sockets are closed by main
+                    if (!isOver()) {
+                        errors++;
+                    }
+                } finally {
+                    OPEN_SOCKETS.remove(socket);
+                    close(socket);
+                }
+            }
+        }
+
+        private void connect() throws IOException {
+            socket = new Socket();
+            OPEN_SOCKETS.add(socket);
+
+            // main may have closed the sockets just before the add
+            if (isOver()) {
+                throw new IOException("Load generator stopped");
+            }
+
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, TictactoeConst.PORT));
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+            connects++;
+        }
+
+        /**
+         * play against a bot of the server until the end of the game
+         * @throws IOException
+        */
+        private void playBotGame() throws IOException {
+            ClientType me = random.nextBoolean() ? ClientType.X : ClientType.O;
+            String grid = request("START BOT " + me + " " + BOTS[random.nextInt(BOTS.length)]);
+
+            while (!isFinished(grid) && !isOver()) {
+                grid = put(parseGrid(grid));
+
+                if (!isGrid(grid)) {
+                    throw new IOException("Unexpected reply: " + grid);
+                }
+            }
+
+            botGames++;
+        }
+
+        /**
+         * play against another connection until the end of the game
+         * we play when it is our turn, else we wait for the move of the opponent
+         * @throws IOException
+        */
+        private void playPlayerGame() throws IOException {
+            String player = request("START PLAYER");
+            ClientType me = player.startsWith("PLAYER X") ? ClientType.X : ClientType.O;
+            String grid = "   \r\n   \r\n   \r\n\r\n";
+
+            while (!isFinished(grid) && !isOver()) {
+                int board = parseGrid(grid);
+                int count = Integer.bitCount(board);
+
+                // X plays when both have the same number of cells
+                if ((count % 2 == 0 ? ClientType.X : ClientType.O) != me) {
+                    // long poll, the server answer when the opponent has played
+                    grid = request("UPDATE " + count);
+                    continue;
+                }
+
+                String result = put(board);
+
+                if (isGrid(result)) {
+                    grid = result;
+                } else if (result.startsWith(TictactoeReply.NO_GAME_MODE.getText())) {
+                    // the opponent is not here yet
+                    sleep(2);
+                } else {
+                    throw new IOException("Unexpected reply: " + result);
+                }
+            }
+
+            playerGames++;
+        }
+
+        /**
+         * play a random empty cell and measure the time of the reply
+         * @param board
+         * @return the reply of the server
+         * @throws IOException
+        */
+        private String put(int board) throws IOException {
+            int empty = Integer.bitCount(Bitboard.emptyCells(board));
+            int cell = Bitboard.nthEmptyCell(board, random.nextInt(empty));
+
+            long before = System.nanoTime();
+            String result = request("PUT " + (cell / 3) + " " + (cell % 3));
+            long nanos = System.nanoTime() - before;
+
+            // a refusal is answered without touching the game, it would make the moves look faster
+            if (isGrid(result)) {
+                record(nanos);
+                moves++;
+            } else {
+                refusedPuts++;
+            }
+
+            return result;
+        }
+
+        private void record(long nanos) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+
+            latencies[latencyCount++] = nanos;
+        }
+
+        private String request(String command) throws IOException {
+            send(command);
+            return readReply();
+        }
+
+        private void send(String command) throws IOException {
+            out.write(command.concat("\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        /**
+         * read a reply of the server, it is ended by an empty line
+         * @return
+         * @throws IOException
+        */
+        private String readReply() throws IOException {
+            int last = 0;
+            int c;
+
+            reply.reset();
+
+            while ((c = in.read()) >= 0) {
+                reply.write(c);
+
+                // the last 4 bytes read
+                last = (last << 8) | c;
+                if (last == 0x0D0A0D0A) {
+                    return reply.toString(StandardCharsets.US_ASCII);
+                }
+            }
+
+            throw new IOException("Connection closed by server");
+        }
+
+        private void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * return true if the reply is a grid (3 lines of 3 cells)
+     * @param reply
+     * @return
+    */
+    private static boolean isGrid(String reply) {
+        return reply.length() >= 15 && reply.charAt(3) == '\r' && reply.charAt(8) == '\r' && reply.charAt(13) == '\r';
+    }
+
+    /**
+     * return true if the grid has a status line (won, draw or opponent quit)
+     * @param grid
+     * @return
+    */
+    private static boolean isFinished(String grid) {
+        return grid.length() > 17;
+    }
+
+    /**
+     * read the cells of the grid in a bitboard (see Bitboard)
+     * @param grid
+     * @return
+    */
+    private static int parseGrid(String grid) {
+        int board = 0;
+
+        for (int cell = 0; cell < 9; cell++) {
+            // each line is 3 cells and "\r\n"
+            char c = grid.charAt((cell / 3) * 5 + cell % 3);
+
+            if (c == 'X') {
+                board = Bitboard.play(board, cell, ClientType.X);
+            } else if (c == 'O') {
+                board = Bitboard.play(board, cell, ClientType.O);
+            }
+        }
+
+        return board;
+    }
+}
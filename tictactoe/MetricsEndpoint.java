@@ -0,0 +1,53 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MetricsEndpoint is a small HTTP server on the admin port
+ * GET /metrics return TictactoeMetrics in the text format of Prometheus
+ * it only listen on the loopback, it is not reachable by the players
+ *
+ * curl http://localhost:2630/metrics
+*/
+public class MetricsEndpoint {
+    private final HttpServer http;
+
+    private final GameRegistry games;
+
+    public MetricsEndpoint(int port, GameRegistry games) throws IOException {
+        this.games = games;
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.http.createContext("/metrics", this::handle);
+    }
+
+    /**
+     * start to answer on its own thread
+    */
+    public void start() {
+        http.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = TictactoeMetrics.toPrometheus(games).getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * NioServerClient is a ServerClient which does not have its own thread
+ * it is driven by a ServerEventLoop, the loop tell us when there is
+ * something to read or when we can write again on the channel
+ * the messages are given to the same listener than a classic ServerClient
+*/
+public class NioServerClient extends ServerClient {
+    /**
+     * non blocking channel of the client
+    */
+    private final SocketChannel channel;
+
+    /**
+     * the event loop which own this client
+    */
+    private final ServerEventLoop loop;
+
+    /**
+     * bytes which could not be written yet because the
+     * socket buffer of the client was full
+    */
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+
+    /**
+     * number of bytes in pending which are not written yet
+    */
+    private int pendingBytes = 0;
+
+    /**
+     * array given to the gathering write, reused for all the writes
+    */
+    private ByteBuffer[] gather = new ByteBuffer[8];
+
+    /**
+     * true while the messages of a read are handled, the replies
+     * are only queued (protected by the lock of pending)
+    */
+    private boolean batching = false;
+
+    /**
+     * true when the channel was full and the loop watch OP_WRITE
+    */
+    private boolean waitingWritable = false;
+
+    /**
+     * key of the channel in the selector of the loop
+    */
+    private SelectionKey key;
+
+    public NioServerClient(SocketChannel channel, ServerEventLoop loop) throws IOException {
+        super(channel);
+        this.channel = channel;
+        this.loop = loop;
+        this.channel.configureBlocking(false);
+    }
+
+    /**
+     * called by the loop when the channel is registered
+     * from now we can send and receive messages
+     * @param key
+    */
+    protected void attach(SelectionKey key) {
+        this.key = key;
+        setRunning(true);
+    }
+
+    /**
+     * Send bytes without blocking the thread
+     * if the channel can not take all the bytes we keep the rest
+     * and the loop will write it when the channel is writable
+     * during a batch (the messages of one read) the bytes are only queued
+     * and endBatch() write them all with one gathering write
+     * this can be called by any thread (for example the opponent's one)
+     * pending is bounded like the queue of a ServerClient (see checkHighWater)
+     * @param data
+     * @param droppable
+     * @throws ClientSendException
+    */
+    @Override
+    protected void queueBytes(byte[] data, boolean droppable) throws ClientSendException {
+        if (!isRunning() || isOverflowed()) {
+            throw new ClientSendException();
+        }
+
+        synchronized(pending) {
+            if (!checkHighWater(pendingBytes, data.length, droppable)) {
+                return;
+            }
+
+            // the arrays are never modified after they are sent, they do not need a copy
+            pending.add(ByteBuffer.wrap(data));
+            pendingBytes += data.length;
+            TictactoeMetrics.outboundQueued(data.length);
+
+            if (!batching) {
+                flushPending();
+            }
+        }
+    }
+
+    @Override
+    protected void beginBatch() {
+        synchronized(pending) {
+            batching = true;
+        }
+    }
+
+    @Override
+    protected void endBatch() throws ClientSendException {
+        synchronized(pending) {
+            batching = false;
+            flushPending();
+        }
+    }
+
+    /**
+     * write what is pending, the lock of pending must be held
+     * if the channel is full the loop will write the rest
+     * @throws ClientSendException
+    */
+    private void flushPending() throws ClientSendException {
+        // the channel is full, onWritable() will write in the good order
+        if (waitingWritable) {
+            return;
+        }
+
+        try {
+            writePending();
+
+            if (!pending.isEmpty()) {
+                waitingWritable = true;
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                loop.wakeup();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            throw new ClientSendException();
+        }
+    }
+
+    /**
+     * write all the pending buffers with one gathering write
+     * and forget the ones which are completely written
+     * the lock of pending must be held
+     * @throws IOException
+    */
+    private void writePending() throws IOException {
+        int count = pending.size();
+
+        if (count == 0) {
+            return;
+        }
+
+        if (gather.length < count) {
+            gather = new ByteBuffer[Math.max(count, gather.length * 2)];
+        }
+
+        pending.toArray(gather);
+
+        try {
+            long written = channel.write(gather, 0, count);
+
+            pendingBytes -= written;
+            TictactoeMetrics.outboundQueued(-written);
+        } finally {
+            Arrays.fill(gather, 0, count, null);
+        }
+
+        while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+            pending.poll();
+        }
+    }
+
+    /**
+     * called by the loop when the channel can take more bytes
+     * we write what is pending and stop watching OP_WRITE when
+     * everything is written
+    */
+    protected void onWritable() {
+        synchronized(pending) {
+            try {
+                writePending();
+
+                if (pending.isEmpty()) {
+                    waitingWritable = false;
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } catch (IOException | CancelledKeyException e) {
+                // the client is gone, the next read will tell it to the server
+                clearPending();
+            }
+        }
+    }
+
+    /**
+     * called by the loop when there is something to read
+     * the buffer is shared by all the clients of the loop
+     * so we decode it before returning
+     * @param buffer
+    */
+    protected void onReadable(ByteBuffer buffer) {
+        int count;
+
+        buffer.clear();
+
+        try {
+            count = channel.read(buffer);
+        } catch (IOException e) {
+            count = -1;
+        }
+
+        if (count < 0) {
+            onConnectionLost();
+            quit();
+            return;
+        }
+
+        // all the replies to the messages of this read are written together
+        beginBatch();
+
+        try {
+            decoder.decode(buffer.array(), 0, count, frameListener);
+        } catch (TictactoeBadResponseException e) {
+            // onFrame already handle the bad responses
+        }
+
+        try {
+            endBatch();
+        } catch (ClientSendException e) {
+            onConnectionLost();
+            quit();
+        }
+    }
+
+    /**
+     * close the channel, the key is cancelled
+     * with it so the loop forget this client
+    */
+    @Override
+    public void quit() {
+        // the replies of the current batch are sent before closing (for example UPDATE then QUIT)
+        // except for a client which does not read them anyway
+        synchronized(pending) {
+            batching = false;
+
+            try {
+                if (!isOverflowed()) {
+                    writePending();
+                }
+            } catch (IOException e) {
+                // the client will not receive them
+            }
+        }
+
+        super.quit();
+
+        synchronized(pending) {
+            clearPending();
+        }
+    }
+
+    /**
+     * a write never blocks on a channel, so it does not have to be closed at once
+     * the input is shut down, the loop read the end of the connection
+     * and the client is removed like any other (see onReadable)
+    */
+    @Override
+    protected void closeSlowConsumer() {
+        try {
+            channel.shutdownInput();
+        } catch (IOException e) {
+            // the channel is already closed
+        }
+    }
+
+    /**
+     * forget the bytes which are not written, the lock of pending must be held
+    */
+    private void clearPending() {
+        TictactoeMetrics.outboundQueued(-pendingBytes);
+        pendingBytes = 0;
+        pending.clear();
+    }
+
+    /**
+     * a NIO client has no thread
+     * the loop already read for it
+    */
+    @Override
+    public void run() {}
+
+    /**
+     * return the channel of the client
+     * @return
+    */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * the bot plays the best move, it can not be beaten
+ * the moves come from the BotMoveTable which is computed once
+ * with a minimax, so a move is only a read in an array
+*/
+public class PerfectBotStrategy implements BotStrategy {
+    public static final PerfectBotStrategy INSTANCE = new PerfectBotStrategy();
+
+    @Override
+    public int chooseCell(int board, ClientType player) {
+        int cell = BotMoveTable.bestMove(board);
+
+        // a grid which is not in the table can not happen in a real game
+        // but we never want the bot to be stuck
+        if (cell < 0) {
+            return RandomBotStrategy.INSTANCE.chooseCell(board, player);
+        }
+
+        return cell;
+    }
+}
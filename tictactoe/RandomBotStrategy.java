@@ -0,0 +1,15 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * the bot plays a random empty cell
+ * it is the bot of the server by default
+*/
+public class RandomBotStrategy implements BotStrategy {
+    public static final RandomBotStrategy INSTANCE = new RandomBotStrategy();
+
+    @Override
+    public int chooseCell(int board, ClientType player) {
+        int available = Integer.bitCount(Bitboard.emptyCells(board));
+        return Bitboard.nthEmptyCell(board, ThreadLocalRandom.current().nextInt(available));
+    }
+}
@@ -0,0 +1,92 @@
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RateLimiter give each remote address a token bucket:
+ * the bucket holds at most burst tokens, it is refilled with rate tokens
+ * per second and an action which finds the bucket empty is refused
+ *
+ * a bucket is only one long (the GCRA form of the token bucket): the time
+ * at which the bucket would be full again, taking a token push it forward
+ * by the time of one token, with a compareAndSet so there is no lock
+ *
+ * a full bucket is the same as no bucket, so the full ones are removed
+ * from the table at each sweep (on the timer of the server), the table
+ * only keeps the addresses which have been active recently
+*/
+public class RateLimiter {
+    private final ConcurrentHashMap<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * time to get one token back (in nanoseconds)
+    */
+    private final long tokenNanos;
+
+    /**
+     * how far the bucket can be from full: burst - 1 tokens
+    */
+    private final long toleranceNanos;
+
+    /**
+     * @param rate tokens given back per second
+     * @param burst size of the bucket
+    */
+    public RateLimiter(int rate, int burst) {
+        this.tokenNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.toleranceNanos = tokenNanos * (burst - 1);
+
+        scheduleSweep();
+    }
+
+    /**
+     * take a token from the bucket of the address
+     * @param address
+     * @return false if the bucket is empty, the action must be refused
+    */
+    public boolean tryAcquire(InetAddress address) {
+        if (address == null || (!TictactoeConst.RATE_LIMIT_LOOPBACK && address.isLoopbackAddress())) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.computeIfAbsent(address, (key) -> new AtomicLong(now));
+
+        while (true) {
+            long full = bucket.get();
+
+            if (full - now > toleranceNanos) {
+                return false;
+            }
+
+            if (bucket.compareAndSet(full, Math.max(full, now) + tokenNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * return the number of addresses in the table
+     * @return
+    */
+    public int size() {
+        return buckets.size();
+    }
+
+    /**
+     * remove the buckets which are full again
+     * a bucket used during the sweep may be removed, its address
+     * then get a full bucket a little early
+    */
+    private void sweep() {
+        long now = System.nanoTime();
+
+        buckets.values().removeIf((bucket) -> bucket.get() <= now);
+        scheduleSweep();
+    }
+
+    private void scheduleSweep() {
+        TimingWheel.SHARED.schedule(this::sweep, TictactoeConst.RATE_LIMIT_SWEEP);
+    }
+}
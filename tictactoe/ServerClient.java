@@ -1,17 +1,129 @@
+import java.io.IOException;
+import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * ServerClient is a client connected to the server
+ *
+ * the messages to the client are put in a bounded outbound queue and written
+ * by the thread which find the queue idle: the thread of the client writes
+ * itself (it only waits for its own client), any other thread (a push of
+ * the opponent, the timer) give the writing to a thread of WRITERS
+ * so a client which does not read never blocks the other ones
+ * when the queue is full SLOW_CONSUMER_POLICY decide what happens
+*/
 public class ServerClient extends Client {
+    /**
+     * threads which write the messages sent by other threads than the one of the client
+     * there are WRITER_THREADS of them, a client has at most one task waiting
+     * (see draining) so the queue of the pool is not longer than the number of clients
+     * a writer blocked by a client which does not read is freed when the client
+     * overflows (its socket is closed) or when the write take more than
+     * WRITE_TIMEOUT (see watchWriter), dropping the pushes is not enough
+    */
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(TictactoeConst.WRITER_THREADS, (task) -> {
+        Thread thread = new Thread(task, "tictactoe-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * used to give a unique id to each connection
+    */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /**
+     * id of the connection, used by the ClientRegistry
+    */
+    private final long id = NEXT_ID.incrementAndGet();
+
     /**
      * A client can only be connected to only
      * one game, game represend this game
      */
     private ServerGame game;
 
+    /**
+     * true if the client asked to receive the grid each time
+     * its opponent plays (PUSH ON), so it does not need to poll with UPDATE
+    */
+    private volatile boolean push = false;
+
+    /**
+     * time of the last message of the client (System.nanoTime())
+     * read by the idle reaper of the server
+    */
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * messages waiting to be written and their size
+     * protected by outboundLock, like the flags below
+    */
+    private final ArrayDeque<byte[]> outbound = new ArrayDeque<>();
+
+    private int outboundBytes = 0;
+
+    /**
+     * size of the messages taken from the queue which are being written
+    */
+    private int writingBytes = 0;
+
+    /**
+     * when the write in progress started (System.nanoTime()), 0 if there is none
+     * a write which take more than WRITE_TIMEOUT means the client does not read
+    */
+    private volatile long writeStart = 0;
+
+    private final ReentrantLock outboundLock = new ReentrantLock();
+
+    /**
+     * true while the messages of a read are handled (see beginBatch)
+    */
+    private boolean outboundBatching = false;
+
+    /**
+     * true while a thread is writing the queue, the other ones only add to it
+    */
+    private boolean draining = false;
+
+    /**
+     * true if quit() was called while a writer was busy
+     * the writer close the socket when the queue is empty
+    */
+    private boolean closing = false;
+
+    /**
+     * true when the queue has reached the high water mark
+     * the client is being disconnected, nothing is written anymore
+    */
+    private volatile boolean overflowed = false;
+
+    /**
+     * thread which read the messages of the client (see run)
+    */
+    private volatile Thread owner;
+
     public ServerClient(Socket client) throws ClientGetStreamException, TictactoeTimeoutException {
         super(client);
         isClientSever = true;
     }
 
+    /**
+     * client connected on a non blocking channel
+     * used by the NIO mode of the server
+     * @param channel
+    */
+    protected ServerClient(SocketChannel channel) {
+        super(channel);
+        isClientSever = true;
+    }
+
     /**
      * we override the method which do the same thing
      * than receiveMessage but to be better understood when
@@ -33,6 +145,421 @@ public class ServerClient extends Client {
     public void sendMessageToClient(String message) throws ClientSendException {
         this.sendMessage(message);
     }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * return the address of the client, used by the rate limits
+     * @return
+    */
+    public InetAddress getAddress() {
+        return client.getInetAddress();
+    }
+
+    /**
+     * return true if the client use the binary protocol
+     * (see TictactoeBinary), the replies have to be binary too
+     * @return
+    */
+    public boolean isBinary() {
+        return decoder.isBinary();
+    }
+
+    /**
+     * send a fixed reply in the protocol of the client
+     * @param reply
+     * @throws ClientSendException
+    */
+    public void sendReply(TictactoeReply reply) throws ClientSendException {
+        TictactoeMetrics.replySent(reply);
+        this.sendBytes(isBinary() ? reply.getBinaryBytes() : reply.getTextBytes());
+    }
+
+    /**
+     * send the grid of the game in the protocol of the client
+     * @param game
+     * @throws ClientSendException
+    */
+    public void sendGrid(ServerGame game) throws ClientSendException {
+        this.sendBytes(isBinary() ? game.getBinaryGridState() : game.getTextGridState());
+    }
+
+    /**
+     * send the grid that the client did not ask for (PUSH ON)
+     * unlike a reply it can be dropped if the client is too slow
+     * @param game
+     * @throws ClientSendException
+    */
+    public void pushGrid(ServerGame game) throws ClientSendException {
+        this.queueBytes(isBinary() ? game.getBinaryGridState() : game.getTextGridState(), true);
+    }
+
+    @Override
+    public void run() {
+        owner = Thread.currentThread();
+        super.run();
+    }
+
+    /**
+     * a reply must be sent, it is never dropped
+     * @param data
+     * @throws ClientSendException
+    */
+    @Override
+    protected void sendBytes(byte[] data) throws ClientSendException {
+        queueBytes(data, false);
+    }
+
+    /**
+     * put the bytes in the outbound queue and write them
+     * if no other thread is already writing
+     * @param data
+     * @param droppable true if the message can be dropped when the client is too slow
+     * @throws ClientSendException if the client is gone or too slow
+    */
+    protected void queueBytes(byte[] data, boolean droppable) throws ClientSendException {
+        if (!isRunning() || overflowed) {
+            throw new ClientSendException();
+        }
+
+        if (isWriteStalled()) {
+            overflow();
+            throw new ClientSendException();
+        }
+
+        boolean writeHere;
+
+        outboundLock.lock();
+        try {
+            if (!checkHighWater(outboundBytes + writingBytes, data.length, droppable)) {
+                return;
+            }
+
+            outbound.add(data);
+            outboundBytes += data.length;
+            TictactoeMetrics.outboundQueued(data.length);
+
+            if (outboundBatching || draining) {
+                return;
+            }
+
+            draining = true;
+            writeHere = Thread.currentThread() == owner;
+        } finally {
+            outboundLock.unlock();
+        }
+
+        if (writeHere) {
+            drain();
+        } else {
+            WRITERS.execute(this::drainQuietly);
+        }
+    }
+
+    /**
+     * check that a message of this size can be queued
+     * @param queued bytes already in the queue
+     * @param length size of the message
+     * @param droppable
+     * @return false if the message has to be dropped
+     * @throws ClientSendException if the client is too slow and is disconnected
+    */
+    protected boolean checkHighWater(int queued, int length, boolean droppable) throws ClientSendException {
+        if (queued + length <= TictactoeConst.OUTBOUND_HIGH_WATER) {
+            return true;
+        }
+
+        if (droppable && TictactoeConst.SLOW_CONSUMER_POLICY == SlowConsumerPolicy.DROP_PUSHES) {
+            TictactoeMetrics.pushDropped();
+            return false;
+        }
+
+        overflow();
+        throw new ClientSendException();
+    }
+
+    /**
+     * the client is too slow, it is disconnected (see closeSlowConsumer())
+     * and the server remove it when its thread (or its loop) see the end of the connection
+    */
+    protected void overflow() {
+        if (overflowed) {
+            return;
+        }
+
+        overflowed = true;
+        TictactoeMetrics.slowConsumerDisconnected();
+        TictactoeLog.warn("Client " + getId() + " does not read its messages, disconnected");
+
+        closeSlowConsumer();
+    }
+
+    /**
+     * close the socket at once: a writer blocked on it fails instead of
+     * waiting forever and the thread of the client stops reading
+    */
+    protected void closeSlowConsumer() {
+        abort();
+    }
+
+    /**
+     * return true if the client has been disconnected because it was too slow
+     * @return
+    */
+    protected boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * write the queue until it is empty, draining must have been set by the caller
+     * the messages are taken together so they are written in one write
+     * @throws ClientSendException
+    */
+    private void drain() throws ClientSendException {
+        while (true) {
+            byte[] chunk;
+
+            outboundLock.lock();
+            try {
+                if (outbound.isEmpty() || overflowed) {
+                    dropOutbound();
+                    draining = false;
+
+                    if (closing) {
+                        abort();
+                    }
+
+                    return;
+                }
+
+                chunk = takeOutbound();
+            } finally {
+                outboundLock.unlock();
+            }
+
+            boolean failed = false;
+
+            writeStart = System.nanoTime();
+
+            try {
+                out.write(chunk);
+                out.flush();
+            } catch (IOException e) {
+                failed = true;
+            } finally {
+                writeStart = 0;
+            }
+
+            outboundLock.lock();
+            try {
+                writingBytes = 0;
+                TictactoeMetrics.outboundQueued(-chunk.length);
+
+                if (failed) {
+                    dropOutbound();
+                    draining = false;
+                }
+            } finally {
+                outboundLock.unlock();
+            }
+
+            if (failed) {
+                throw new ClientSendException();
+            }
+        }
+    }
+
+    /**
+     * drain() on a thread of WRITERS, if the connection is broken
+     * the socket is closed so the thread of the client see it
+    */
+    private void drainQuietly() {
+        TimingWheel.Timeout watch = TimingWheel.SHARED.schedule(this::watchWriter, TictactoeConst.WRITE_TIMEOUT);
+
+        try {
+            drain();
+        } catch (ClientSendException e) {
+            abort();
+        } finally {
+            watch.cancel();
+        }
+    }
+
+    /**
+     * called by the timer while a thread of WRITERS drains the queue
+     * if the write is blocked since WRITE_TIMEOUT the client is disconnected
+     * so the writer is freed even if no other message come to see it
+     * (see queueBytes), else we look again when it could be
+    */
+    private void watchWriter() {
+        if (!isRunning() || overflowed) {
+            return;
+        }
+
+        if (isWriteStalled()) {
+            overflow();
+            return;
+        }
+
+        long start = writeStart;
+        long delay = TictactoeConst.WRITE_TIMEOUT;
+
+        if (start != 0) {
+            delay = Math.max(1, delay - (System.nanoTime() - start) / 1000000);
+        } else {
+            // between two writes, we look again only if the drain is not over
+            // (the cancel of drainQuietly can come after the timer started)
+            outboundLock.lock();
+            try {
+                if (!draining) {
+                    return;
+                }
+            } finally {
+                outboundLock.unlock();
+            }
+        }
+
+        TimingWheel.SHARED.schedule(this::watchWriter, delay);
+    }
+
+    /**
+     * return true if a write is blocked since more than WRITE_TIMEOUT
+     * @return
+    */
+    private boolean isWriteStalled() {
+        long start = writeStart;
+        return start != 0 && System.nanoTime() - start > TictactoeConst.WRITE_TIMEOUT * 1000000L;
+    }
+
+    /**
+     * remove all the messages of the queue in one array, outboundLock must be held
+     * they count in writingBytes until they are written
+     * @return
+    */
+    private byte[] takeOutbound() {
+        byte[] chunk;
+
+        if (outbound.size() == 1) {
+            chunk = outbound.poll();
+        } else {
+            chunk = new byte[outboundBytes];
+            int offset = 0;
+            byte[] data;
+
+            while ((data = outbound.poll()) != null) {
+                System.arraycopy(data, 0, chunk, offset, data.length);
+                offset += data.length;
+            }
+        }
+
+        writingBytes = chunk.length;
+        outboundBytes = 0;
+        return chunk;
+    }
+
+    /**
+     * forget the messages which are not written yet, outboundLock must be held
+     * the ones being written are counted by the writer
+    */
+    private void dropOutbound() {
+        TictactoeMetrics.outboundQueued(-outboundBytes);
+        outboundBytes = 0;
+        outbound.clear();
+    }
+
+    @Override
+    protected void beginBatch() {
+        outboundLock.lock();
+        try {
+            outboundBatching = true;
+        } finally {
+            outboundLock.unlock();
+        }
+    }
+
+    @Override
+    protected void endBatch() throws ClientSendException {
+        outboundLock.lock();
+        try {
+            outboundBatching = false;
+
+            if (draining || outbound.isEmpty()) {
+                return;
+            }
+
+            draining = true;
+        } finally {
+            outboundLock.unlock();
+        }
+
+        drain();
+    }
+
+    /**
+     * send what is in the queue then close the socket
+     * if another thread is writing, it close the socket when it is done
+    */
+    @Override
+    public void quit() {
+        boolean writeHere = false;
+
+        outboundLock.lock();
+        try {
+            outboundBatching = false;
+
+            if (overflowed) {
+                dropOutbound();
+            } else if (draining) {
+                closing = true;
+                setRunning(false);
+                return;
+            } else if (!outbound.isEmpty()) {
+                draining = true;
+                writeHere = true;
+            }
+        } finally {
+            outboundLock.unlock();
+        }
+
+        if (writeHere) {
+            try {
+                drain();
+            } catch (ClientSendException e) {
+                // the client will not receive them
+            }
+        }
+
+        super.quit();
+    }
+
+    /**
+     * send the type of the player after START PLAYER
+     * @param type
+     * @throws ClientSendException
+    */
+    public void sendPlayer(ClientType type) throws ClientSendException {
+        sendReply(TictactoeReply.player(type));
+    }
+
+    /**
+     * the WRONG of a binary client is binary
+     * @throws ClientSendException
+    */
+    @Override
+    protected void sendWrong() throws ClientSendException {
+        sendReply(TictactoeReply.WRONG);
+    }
+
+    /**
+     * the warnings of a connection go to the log of the server
+     * @param message
+    */
+    @Override
+    protected void warn(String message) {
+        TictactoeLog.warn(message);
+    }
     
     /**
      * return true if the client is connected to a game
@@ -49,6 +576,54 @@ public class ServerClient extends Client {
         this.game = game;
     }
 
+    /**
+     * enable or disable the push of the grid
+     * @param push
+    */
+    public void setPush(boolean push) {
+        this.push = push;
+    }
+
+    /**
+     * return true if the grid is pushed to the client
+     * @return
+    */
+    public boolean isPush() {
+        return push;
+    }
+
+    /**
+     * the client sent a message
+     * @param now System.nanoTime()
+    */
+    public void touch(long now) {
+        this.lastActivity = now;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * return how long the client can stay silent (in milliseconds)
+     * a player waiting for an opponent can wait longer than a player
+     * in a running game, a finished game is like no game
+     * @return
+    */
+    public long getIdleLimit() {
+        ServerGame current = this.game;
+
+        if (current == null || current.getState().isTerminated()) {
+            return TictactoeConst.LOBBY_IDLE_TIMEOUT;
+        }
+
+        if (current.getState() == GameState.WAITING) {
+            return TictactoeConst.WAITING_IDLE_TIMEOUT;
+        }
+
+        return TictactoeConst.GAME_IDLE_TIMEOUT;
+    }
+
     /**
      * return the client current game
      * @return
@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ServerEventLoop is one thread of the NIO mode of the server
+ * a single loop watch many NioServerClient with a Selector
+ * and call them when they can read or write
+ * so we do not need one thread per connected client anymore
+*/
+public class ServerEventLoop extends Thread {
+    /**
+     * selector which watch all the channels of this loop
+    */
+    private final Selector selector;
+
+    /**
+     * clients accepted by the server but not registered yet
+     * a channel must be registered by the thread of the loop
+     * else register() can block while the loop is selecting
+    */
+    private final ConcurrentLinkedQueue<NioServerClient> registrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * buffer used to read all the channels of this loop
+     * the bytes are decoded before we read the next channel
+    */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(TictactoeConst.READ_BUFFER_SIZE);
+
+    public ServerEventLoop(int index) throws IOException {
+        super("tictactoe-loop-" + index);
+        this.selector = Selector.open();
+    }
+
+    /**
+     * give a new client to this loop
+     * it will be registered at the next iteration
+     * @param client
+    */
+    public void register(NioServerClient client) {
+        registrations.add(client);
+        selector.wakeup();
+    }
+
+    /**
+     * wake up the loop if it is waiting in select()
+     * used when an other thread want to write on one of our channels
+    */
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    /**
+     * register the clients given by the server
+    */
+    private void registerPending() {
+        NioServerClient client;
+
+        while ((client = registrations.poll()) != null) {
+            try {
+                SelectionKey key = client.getChannel().register(selector, SelectionKey.OP_READ, client);
+                client.attach(key);
+            } catch (ClosedChannelException e) {
+                // the client is already gone
+                client.quit();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                registerPending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioServerClient client = (NioServerClient) key.attachment();
+
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            client.onWritable();
+                        }
+
+                        if (key.isValid() && key.isReadable()) {
+                            client.onReadable(readBuffer);
+                        }
+                    } catch (RuntimeException e) {
+                        /**
+                         * a bug in the handling of one client must not
+                         * stop all the other clients of the loop
+                        */
+                        TictactoeLog.error("[RuntimeException in ServerEventLoop.run()]");
+                        client.quit();
+                    }
+                }
+            } catch (IOException e) {
+                TictactoeLog.error("[IOException in ServerEventLoop.run()]");
+                return;
+            }
+        }
+    }
+}
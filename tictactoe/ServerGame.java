@@ -1,12 +1,37 @@
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 /**
  * This class represnets  the game logic on the server side.
  * It handles the game state, player turns, and win conditions.
 */
 
 public class ServerGame {
+    /**
+     * used to give a unique id to each game
+    */
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /**
+     * thread which tells the players that a clock has expired
+     * the thread of the TimingWheel only changes the game, it never sends
+     * anything itself, so a player who does not read can not delay
+     * the other timeouts of the server (idle clients, parked UPDATE)
+    */
+    private static final ExecutorService CLOCK_NOTIFIER = Executors.newSingleThreadExecutor((task) -> {
+        Thread thread = new Thread(task, "tictactoe-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * id of the game, used by the GameRegistry
+    */
+    private final long id = NEXT_ID.incrementAndGet();
+
     /*
      * playerX is always the first player to play
      */
@@ -18,12 +43,12 @@ public class ServerGame {
     private ServerClient playerO;
 
     /*
-     * Represnts the grid of the game
-     * null means the cell is empty
-     * ClientType.X means the cell is occupied by player X
-     * ClientType.O means the cell is occupied by player O 
+     * Represnts the grid of the game as a bitboard (see Bitboard)
+     * the bits 0-8 are the cells of player X
+     * the bits 9-17 are the cells of player O
+     * a cell with no bit set is empty
     */
-    private ClientType grid[][] = new ClientType[3][3];
+    private int board = 0;
 
     /*
      * currentPlayer indicates whose turn it is
@@ -38,6 +63,12 @@ public class ServerGame {
     */
     private boolean isBotGame = false;
 
+    /**
+     * how the bot choose its moves (random, heuristic or perfect)
+     * only used if the game is against a bot
+    */
+    private BotStrategy bot = RandomBotStrategy.INSTANCE;
+
     /**
      * indicates if the game has ended in a draw
      * true means the game is a draw
@@ -68,6 +99,66 @@ public class ServerGame {
     */
     private ClientType winner = null;
 
+    /**
+     * the player who has run out of time, he lose the game
+     * null if no clock has expired
+    */
+    private ClientType timedOut = null;
+
+    /**
+     * clock of the player who has to play (two player games only)
+     * there is one timeout of the TimingWheel by game at a time,
+     * it is replaced at each move, protected by the lock of the game
+    */
+    private TimingWheel.Timeout clock;
+
+    /**
+     * when the current turn started (System.nanoTime())
+    */
+    private long turnStart;
+
+    /**
+     * time left to each player for the whole game (in milliseconds)
+    */
+    private long timeLeftX = TictactoeConst.GAME_TIMEOUT;
+
+    private long timeLeftO = TictactoeConst.GAME_TIMEOUT;
+
+    /**
+     * lock of the game, the two players can play at the same time
+     * a ReentrantLock does not pin a virtual thread like synchronized
+    */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * clients parked by "UPDATE <moves>" until the grid changes
+     * (see GridWaiter), protected by the lock of the game
+    */
+    private final ArrayList<GridWaiter> waiters = new ArrayList<>();
+
+    /**
+     * the grid already encoded for the text protocol, with its status
+     * and the end of message, and for the binary protocol
+     * they are rebuilt by encodeGrid() each time the game change
+     * so UPDATE, PUT and the pushes only write these bytes
+     * the arrays are shared by all the readers, they must not be modified
+    */
+    private volatile byte[] encodedText;
+
+    private volatile byte[] encodedBinary;
+
+    /**
+     * the registry which counts this game, null before register() and after evict()
+     * and the state it was last told, both protected by the lock of the game
+    */
+    private GameRegistry registry;
+
+    private GameState reportedState;
+
+    public ServerGame() {
+        encodeGrid();
+    }
+
     /**
      * return true if the client is a player of this game
      * @param client
@@ -96,34 +187,303 @@ public class ServerGame {
      * @param client The player making the move
      * @param row The row index (0-2)
      * @param col The column index (0-2)
-     * @return A string indicating the result of the move ("OK", "NOT YOUR TURN", "INVALID RANGE", "CELL OCCUPIED")
+     * @return the reply if the move is refused ("NOT YOUR TURN", "INVALID RANGE", "CELL OCCUPIED"...)
+     * or null if the move has been played, the grid has then to be sent to the player
+    */
+    public TictactoeReply play(ServerClient client, int row, int col) {
+        TictactoeReply refused;
+
+        lock.lock();
+        try {
+            refused = playLocked(client, row, col);
+
+            if (refused == null) {
+                switchClock(client.getType());
+                encodeGrid();
+                reportState();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // the opponent learn the move without asking for it
+        if (refused == null) {
+            pushGrid(getOpponent(client));
+            wakeWaiters();
+        }
+
+        return refused;
+    }
+
+    /**
+     * start the clock of the player who has to play now
+     * he has TURN_TIMEOUT or what is left of his GAME_TIMEOUT
+     * there is no clock when TURN_TIMEOUT is 0
+     * the lock must be held
+    */
+    private void startClock() {
+        // the clocks are turned off
+        if (TictactoeConst.TURN_TIMEOUT <= 0) {
+            return;
+        }
+
+        long timeLeft = currentPlayer == ClientType.X ? timeLeftX : timeLeftO;
+        int moves = getMoveCount();
+
+        turnStart = System.nanoTime();
+        clock = TimingWheel.SHARED.schedule(() -> onClockExpired(moves), Math.min(TictactoeConst.TURN_TIMEOUT, timeLeft));
+    }
+
+    /**
+     * the player has played, his time is taken from his game time
+     * and the clock of his opponent starts if the game goes on
+     * the lock must be held
+     * @param player
+    */
+    private void switchClock(ClientType player) {
+        if (clock == null) {
+            return;
+        }
+
+        clock.cancel();
+        clock = null;
+
+        long spent = (System.nanoTime() - turnStart) / 1_000_000;
+
+        if (player == ClientType.X) {
+            timeLeftX -= spent;
+        } else {
+            timeLeftO -= spent;
+        }
+
+        if (!isFinished()) {
+            startClock();
+        }
+    }
+
+    /**
+     * the clock of the current player is over, he lose the game
+     * nothing happens if a move has been played since the clock started
+     * (the timer and the move can happen at the same time)
+     *
+     * it runs on the thread of the TimingWheel: the game is changed under its
+     * lock like a move, the lock is never held while writing to a player,
+     * then the grid is sent by CLOCK_NOTIFIER
+     * nobody plays in the game anymore, so it is evicted from its registry
+     * after its last grid has been sent, like after the last PUT
+     * @param moves number of moves when the clock started
+    */
+    private void onClockExpired(int moves) {
+        GameRegistry owner;
+
+        lock.lock();
+        try {
+            if (isFinished() || getMoveCount() != moves) {
+                return;
+            }
+
+            clock = null;
+            timedOut = currentPlayer;
+            encodeGrid();
+            reportState();
+            owner = registry;
+        } finally {
+            lock.unlock();
+        }
+
+        CLOCK_NOTIFIER.execute(() -> {
+            pushGrid(playerX);
+            pushGrid(playerO);
+            wakeWaiters();
+
+            if (owner != null) {
+                owner.evict(this);
+            }
+        });
+    }
+
+    /**
+     * the game is counted by the registry from now on
+     * @param registry
+    */
+    void attach(GameRegistry registry) {
+        lock.lock();
+        try {
+            this.registry = registry;
+            reportedState = getState();
+            registry.moved(null, reportedState, isBotGame);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * the game is not counted by its registry anymore
+    */
+    void detach() {
+        lock.lock();
+        try {
+            if (registry != null) {
+                registry.moved(reportedState, null, isBotGame);
+                registry = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * tell the registry if the state of the game has changed
+     * the lock must be held
+    */
+    private void reportState() {
+        if (registry == null) {
+            return;
+        }
+
+        GameState state = getState();
+
+        if (state != reportedState) {
+            registry.moved(reportedState, state, isBotGame);
+            reportedState = state;
+        }
+    }
+
+    /**
+     * send the grid to the player if he asked for it (PUSH ON)
+     * it is sent after the lock of the game is released
+     * so a slow player does not block the game
+     * @param player
+    */
+    public void pushGrid(ServerClient player) {
+        if (player == null || !player.isPush()) {
+            return;
+        }
+
+        try {
+            player.pushGrid(this);
+        } catch (ClientSendException e) {
+            // the player is gone (or too slow), his own connection will tell it to the server
+        }
+    }
+
+    /**
+     * park the client until the grid has not this number of moves anymore
+     * or the game is finished, the grid is then sent to the client
+     * the client is never parked in a bot game (the bot has already answered
+     * in the reply of PUT, nothing would wake it) or in a finished game
+     * @param client
+     * @param knownMoves the number of moves of the last grid of the client
+     * @param timeoutMillis after this time the grid is sent anyway
+     * @return false if the grid has already changed, it has to be sent now
     */
-    public synchronized String play(ServerClient client, int row, int col) {
+    public boolean waitForMove(ServerClient client, int knownMoves, long timeoutMillis) {
+        lock.lock();
+        try {
+            if (isBotGame || isFinished() || getMoveCount() != knownMoves) {
+                return false;
+            }
+
+            waiters.add(GridWaiter.park(client, this, timeoutMillis));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * forget a waiter (its timeout has expired)
+     * @param waiter
+    */
+    public void removeWaiter(GridWaiter waiter) {
+        lock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * send the new grid to all the parked clients
+     * they are taken under the lock but the grid is sent after
+    */
+    private void wakeWaiters() {
+        GridWaiter[] parked;
+
+        lock.lock();
+        try {
+            if (waiters.isEmpty()) {
+                return;
+            }
+
+            parked = waiters.toArray(new GridWaiter[0]);
+            waiters.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (GridWaiter waiter : parked) {
+            waiter.complete();
+        }
+    }
+
+    /**
+     * return the number of moves played in the game
+     * (the number of X and O on the grid)
+     * @return
+    */
+    public int getMoveCount() {
+        return Integer.bitCount(board);
+    }
+
+    /**
+     * return the other player of the game
+     * or null if there is none (waiting game or bot game)
+     * @param client
+     * @return
+    */
+    public ServerClient getOpponent(ServerClient client) {
+        if (client.equals(playerX)) {
+            return playerO;
+        } else if (client.equals(playerO)) {
+            return playerX;
+        }
+
+        return null;
+    }
+
+    /**
+     * same as play() but the lock of the game is already held
+    */
+    private TictactoeReply playLocked(ServerClient client, int row, int col) {
         // check if it's the client's turn
         if (isFinished()) {
-            return "GAME FINISHED".concat(TictactoeConst.END_OF_MESSAGE);
+            return TictactoeReply.GAME_FINISHED;
         }
 
         if (!isBotGame && getPlayerCount() < 2) {
-            return "NO GAME MODE".concat(TictactoeConst.END_OF_MESSAGE);
+            return TictactoeReply.NO_GAME_MODE;
         }
 
         if (!this.currentPlayer.equals(client.getType())) {
-            return "NOT YOUR TURN".concat(TictactoeConst.END_OF_MESSAGE);
+            return TictactoeReply.NOT_YOUR_TURN;
         }
 
         // check if the coordinates are valid
         if (row < 0 || col > 2 || col < 0 || row > 2) {
-            return "INVALID RANGE".concat(TictactoeConst.END_OF_MESSAGE);
+            return TictactoeReply.INVALID_RANGE;
         }
 
+        int cell = row * 3 + col;
+
         // check if the cell is already occupied
-        if (this.grid[row][col] != null) {
-            return "CELL OCCUPIED".concat(TictactoeConst.END_OF_MESSAGE);
+        if ((Bitboard.emptyCells(board) & (1 << cell)) == 0) {
+            return TictactoeReply.CELL_OCCUPIED;
         }
 
         // place the player's mark on the grid
-        grid[row][col] = this.currentPlayer;
+        board = Bitboard.play(board, cell, this.currentPlayer);
 
         // switch to the other player
         toogleCurrentPlayer();
@@ -131,9 +491,9 @@ public class ServerGame {
         // update the game state
         updateGameState();
 
-        // if the state is finished (so the state has changed) return the grid state
+        // if the state is finished (so the state has changed) the grid is sent as it is
         if (isFinished()) {
-            return getGridState();
+            return null;
         } 
 
         if (isBotGame && !isFinished()) {
@@ -141,7 +501,7 @@ public class ServerGame {
             updateGameState();
         }
 
-        return getGridState();
+        return null;
     }
 
     /**
@@ -162,33 +522,57 @@ public class ServerGame {
      * @throws ServerGameException if player X is already set
     */
     public void setPlayerX(ServerClient playerX) throws ServerGameException {
-        if (this.playerX != null) {
-            throw new ServerGameException("Player X is already set");
-        }
+        lock.lock();
+        try {
+            if (this.playerX != null) {
+                throw new ServerGameException("Player X is already set");
+            }
 
-        this.playerX = playerX;
+            this.playerX = playerX;
+            reportState();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /*
      * Set player O
      * @param playerO
-     * @throws ServerGameException if player O is already set or if player X is not set
+     * @throws ServerGameException if player O is already set, if player X is not set
+     * or if the game has been aborded (player X left while waiting)
     */
     public void setPlayerO(ServerClient playerO) throws ServerGameException {
-        if (this.playerX == null && !isBotGame) {
-            throw new ServerGameException("Player X must be set before setting Player O");
-        } else if (this.playerO != null) {
-            throw new ServerGameException("Player O is already set");
-        } else if (this.playerX != null && this.playerX.equals(playerO)) {
-            throw new ServerGameException("Player O cannot be the same as Player X");
-        }
+        lock.lock();
+        try {
+            if (isAborded) {
+                throw new ServerGameException("The game has been aborded");
+            } else if (this.playerX == null && !isBotGame) {
+                throw new ServerGameException("Player X must be set before setting Player O");
+            } else if (this.playerO != null) {
+                throw new ServerGameException("Player O is already set");
+            } else if (this.playerX != null && this.playerX.equals(playerO)) {
+                throw new ServerGameException("Player O cannot be the same as Player X");
+            }
 
-        this.playerO = playerO;
+            this.playerO = playerO;
 
-        if (isBotGame) {
-            botPlay();
-            updateGameState();
+            if (isBotGame) {
+                botPlay();
+                updateGameState();
+                encodeGrid();
+            } else {
+                // the two players are here, the clock of X starts
+                startClock();
+            }
+
+            reportState();
+        } finally {
+            lock.unlock();
         }
+
+        // X may be parked on UPDATE while waiting for an opponent, the game is running now
+        pushGrid(playerX);
+        wakeWaiters();
     }
 
     /**
@@ -199,73 +583,79 @@ public class ServerGame {
         this.isBotGame = true;
     }
 
+    /**
+     * set the way the bot of this game choose its moves
+     * @param bot
+    */
+    public void setBotStrategy(BotStrategy bot) {
+        this.bot = bot;
+    }
+
     /**
      * Update the game state to check for a win or draw
      * This method should be called after each move
      * It sets isWin, isDraw, and winner accordingly
     */
     private void updateGameState() {
-        // check rows, columns, and diagonals for a win
-        // allfilled is true if all cells are filled
-        boolean allFilled = true;
-
-        for (int i = 0; i < 3; i++) {
-            if (grid[i][0] != null && grid[i][0] == grid[i][1] && grid[i][1] == grid[i][2]) {
-                isWin = true;
-                winner = grid[i][0];
-                return;
-            }
-            if (grid[0][i] != null && grid[0][i] == grid[1][i] && grid[1][i] == grid[2][i]) {
-                isWin = true;
-                winner = grid[0][i];
-                return;
-            }
-
-            if (allFilled) {
-                for (int j = 0; j < 3; j++) {
-                    if (grid[i][j] == null) {
-                        allFilled = false;
-                        break;
-                    }
-                }
-            }
-        }
-
-        // check diagonals
-        if (grid[0][0] != null && grid[0][0] == grid[1][1] && grid[1][1] == grid[2][2]) {
+        // the winner is the player whose cells contains a full line
+        if (Bitboard.hasLine(Bitboard.xCells(board))) {
             isWin = true;
-            winner = grid[0][0];
+            winner = ClientType.X;
             return;
         }
 
-        if (grid[0][2] != null && grid[0][2] == grid[1][1] && grid[1][1] == grid[2][0]) {
+        if (Bitboard.hasLine(Bitboard.oCells(board))) {
             isWin = true;
-            winner = grid[0][2];
+            winner = ClientType.O;
             return;
         }
 
         // check for draw
-        if (allFilled) {
+        if (Bitboard.isFull(board)) {
             isDraw = true;
         }
     }
 
     /**
      * Check if the game has finished
-     * A game is finished if there is a win, a draw, or it has been aborded
+     * A game is finished if there is a win, a draw, a player out of time
+     * or it has been aborded
      * @return true if the game is finished, false otherwise
     */
     public boolean isFinished() {
-        return isDraw || isWin || isAborded;
+        return isDraw || isWin || isAborded || timedOut != null;
     }
 
     /**
      * Abord the game
      * This sets the isAborded flag to true
      * the game is aborder by the server when a player disconnects
+     * a game already won or drawn is not changed
+     * @return true if the game has been aborded by this call
     */
-    public void abortGame() {
-        this.isAborded = true;
+    public boolean abortGame() {
+        lock.lock();
+        try {
+            // a game which has already ended keep its result
+            if (isFinished()) {
+                return false;
+            }
+
+            this.isAborded = true;
+
+            if (clock != null) {
+                clock.cancel();
+                clock = null;
+            }
+
+            encodeGrid();
+            reportState();
+        } finally {
+            lock.unlock();
+        }
+
+        wakeWaiters();
+        return true;
     }
     
 
@@ -280,6 +670,8 @@ public class ServerGame {
             return "OPPONENT QUIT";
         } else if (isWin) {
             return winner.toString().toUpperCase() + " WON";
+        } else if (timedOut != null) {
+            return timedOut.toString().toUpperCase() + " TIMEOUT";
         } else if (isDraw) {
             return "DRAW";
         } else {
@@ -288,6 +680,35 @@ public class ServerGame {
     }
 
 
+    /**
+     * return the state of the game in its lifecycle
+     * @return
+    */
+    public GameState getState() {
+        lock.lock();
+        try {
+            if (isAborded) {
+                return GameState.ABORTED;
+            } else if (isWin || isDraw || timedOut != null) {
+                return GameState.FINISHED;
+            } else if (isBotGame || getPlayerCount() == 2) {
+                return GameState.RUNNING;
+            } else {
+                return GameState.WAITING;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * return the id of the game
+     * @return
+    */
+    public long getId() {
+        return id;
+    }
+
     /*
      * return true is the game is a bot game
     */
@@ -303,12 +724,14 @@ public class ServerGame {
     public String getGridState() {
         StringBuilder builder = new StringBuilder();
 
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid.length; j++) {
-                if (grid[i][j] == null) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                ClientType type = Bitboard.get(board, i * 3 + j);
+
+                if (type == null) {
                     builder.append(" ");
                 } else {
-                    builder.append(grid[i][j].toString());
+                    builder.append(type.toString());
                 }
             }
 
@@ -323,34 +746,70 @@ public class ServerGame {
         return builder.toString();
     }
 
+    /**
+     * return the grid for the text protocol, ended by the empty line
+     * it is encoded once for each state of the game
+     * @return bytes shared with the other readers, they must not be modified
+    */
+    public byte[] getTextGridState() {
+        return encodedText;
+    }
+
+    /**
+     * return the grid for the binary protocol (see TictactoeBinary)
+     * it is encoded once for each state of the game
+     * @return bytes shared with the other readers, they must not be modified
+    */
+    public byte[] getBinaryGridState() {
+        return encodedBinary;
+    }
+
+    /**
+     * encode the grid in both protocols, the lock must be held
+     * (or the game not shared yet) and the game just changed
+    */
+    private void encodeGrid() {
+        encodedText = getGridState().concat(TictactoeConst.END_OF_MESSAGE).getBytes(StandardCharsets.US_ASCII);
+        encodedBinary = encodeBinaryGrid();
+    }
+
+    /**
+     * same as getGridState() for the binary protocol
+     * the grid and its status are packed in 4 bytes (see TictactoeBinary)
+     * @return
+    */
+    private byte[] encodeBinaryGrid() {
+        int status = TictactoeBinary.STATUS_RUNNING;
+
+        if (isAborded) {
+            status = TictactoeBinary.STATUS_OPPONENT_QUIT;
+        } else if (isWin) {
+            status = winner == ClientType.X ? TictactoeBinary.STATUS_X_WON : TictactoeBinary.STATUS_O_WON;
+        } else if (timedOut != null) {
+            status = timedOut == ClientType.X ? TictactoeBinary.STATUS_X_TIMEOUT : TictactoeBinary.STATUS_O_TIMEOUT;
+        } else if (isDraw) {
+            status = TictactoeBinary.STATUS_DRAW;
+        }
+
+        return TictactoeBinary.encodeGrid(board, status);
+    }
+
     /**
      * If the game is against a bot, make the bot play its turn
      * The bot plays as player O
-     * to play, the bot selects a random available cell
+     * to play, the bot asks its BotStrategy for an available cell
      * It places its mark there and toggles the current player
     */
 
     private void botPlay() {
-        List <Integer> available = new ArrayList<>();
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (this.grid[i][j] == null) {
-                    // available cell
-                    available.add(i * 3 + j);
-                }
-            }
-        }
-
         // if there is not available cell, do nothing
-        if (available.isEmpty()) {
+        if (Bitboard.emptyCells(board) == 0) {
             return;
         }
 
-        int index = ThreadLocalRandom.current().nextInt(available.size());
-        int pos = available.get(index);
-        int row = pos / 3;
-        int col = pos % 3;
-        this.grid[row][col] = this.currentPlayer;
+        int cell = bot.chooseCell(board, this.currentPlayer);
+
+        board = Bitboard.play(board, cell, this.currentPlayer);
         toogleCurrentPlayer();
     }
 
@@ -0,0 +1,31 @@
+/**
+ * What the server does when a client does not read its messages
+ * and its outbound queue reach TictactoeConst.OUTBOUND_HIGH_WATER
+ * DROP_PUSHES  the pushed grids are dropped (the client can still ask
+ *              for the grid with UPDATE), a reply to a request disconnect the client
+ * DISCONNECT   any message disconnect the client
+*/
+public enum SlowConsumerPolicy {
+    DROP_PUSHES,
+    DISCONNECT;
+
+    /**
+     * return the policy of this name (case is ignored)
+     * or the default one if the name is null or unknown
+     * @param str
+     * @param defaultPolicy
+     * @return
+    */
+    public static SlowConsumerPolicy fromString(String str, SlowConsumerPolicy defaultPolicy) {
+        if (str == null) {
+            return defaultPolicy;
+        }
+
+        try {
+            return SlowConsumerPolicy.valueOf(str.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("[Unknown slow consumer policy " + str + ", using " + defaultPolicy + "]");
+            return defaultPolicy;
+        }
+    }
+}
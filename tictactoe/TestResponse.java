@@ -0,0 +1,258 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * TestResponse check that the parser of TictactoeResponse accept
+ * exactly the same messages than the two regex of the protocol
+ * and give the same command, params and lines
+ * the old regex parser is kept below as the reference
+ *
+ * java TestResponse [random messages]
+*/
+public class TestResponse {
+    private static final Pattern COMMAND_REGEX = Pattern.compile("^([A-Z]+)(\\s+[A-Z]{2,})?(\\s+[A-Z]{2,})?(\\s+[A-Za-z]|\\s+\\-?[0-9]+)?(\\s+[A-Za-z]|\\s+\\-?[0-9]+)?\\s*\\r\\n(\\r\\n)?$");
+
+    private static final Pattern PUZZLE_REGEX = Pattern.compile("^([XxOo\\s]{3}\\r\\n){3}(([XxOo] WON|[XxOo] TIMEOUT|DRAW|OPPONENT QUIT)\\r\\n)?(\\r\\n)?$");
+
+    /**
+     * messages of the protocol and some bad ones
+    */
+    private static final String[] MESSAGES = {
+        "START BOT X\r\n\r\n", "START BOT O\r\n\r\n", "START BOT x\r\n\r\n", "START BOT X P\r\n\r\n",
+        "START  BOT  X\r\n\r\n", "START BOT Z\r\n\r\n", "START PLAYER\r\n\r\n", "START PLAYER X\r\n\r\n",
+        "PUT 0 0\r\n\r\n", "PUT 1 2\r\n\r\n", "PUT -1 0\r\n\r\n", "PUT 3 3\r\n\r\n", "PUT 1\r\n\r\n",
+        "PUT 1 1 1\r\n\r\n", "PUT a b\r\n\r\n", "PUT ab 1\r\n\r\n", "PUT 1-1\r\n\r\n", "PUT 1 1 \r\n\r\n",
+        "UPDATE\r\n\r\n", "UPDATE 3\r\n\r\n", "QUIT\r\n\r\n", "QUIT\r\n", "WRONG\r\n\r\n",
+        "NO GAME MODE\r\n\r\n", "NOT YOUR TURN\r\n\r\n", "CELL OCCUPIED\r\n\r\n", "INVALID RANGE\r\n\r\n",
+        "GAME FINISHED\r\n\r\n", "PLAYER X\r\n\r\n", "PLAYER O\r\n\r\n", "COMMANDE INVALIDE\r\n\r\n",
+        "TOO MANY REQUESTS\r\n\r\n",
+        "\r\n\r\n", "", "!@#$%^&*()\r\n\r\n", "  sTaRt   bOt    x  \r\n\r\n", "start bot x\r\n\r\n",
+        "START\r\nBOT X\r\n\r\n", "PUT 0 0\r\n", "PUT 0 0", "PUT 0 0\r\n\r\n\r\n", "PUT 0 0\r\n\n",
+        "PUT 0 0\r\n\r", "PUT 0 0\r\n\u0085", "PUT 0 0\r\n \n", "NO GAME -50\r\n\r\n",
+        "   \r\n   \r\n   \r\n\r\n", "X  \r\n O \r\n   \r\n\r\n", "XOX\r\nOXO\r\nXOX\r\nX WON\r\n\r\n",
+        "XOX\r\nOXO\r\nOXO\r\nDRAW\r\n\r\n", "X  \r\n   \r\n   \r\nOPPONENT QUIT\r\n\r\n", "XO \r\n   \r\n   \r\nX TIMEOUT\r\n\r\n",
+        "xo \r\n   \r\n   \r\no WON\r\n", "XXX\r\n   \r\n   \r\n", "XX\r\n   \r\n   \r\n\r\n",
+        "XXA\r\n   \r\n   \r\n\r\n", "\r\n \r\n   \r\n   \r\n\r\n", "   \r\n   \r\n   \r\nX LOST\r\n\r\n",
+        "A".repeat(2048) + "\r\n\r\n"
+    };
+
+    /**
+     * chars used to build random messages
+    */
+    private static final char[] ALPHABET = {
+        'A', 'B', 'O', 'P', 'T', 'U', 'X', 'Z', 'a', 'o', 'x', '0', '1', '9', '-',
+        ' ', ' ', '\t', '\r', '\n', '\r', '\n', '\u000B', '\f', '\u0001', '\u0085', '\u2028'
+    };
+
+    private static final String[] WORDS = {
+        "START", "BOT", "PLAYER", "PUT", "UPDATE", "QUIT", "WON", "DRAW", "OPPONENT", "X", "O", "x",
+        "12", "-3", "   ", "\r\n", "\r\n\r\n", "XOX"
+    };
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) {
+        int randomCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        for (String message : MESSAGES) {
+            check(message);
+        }
+
+        Random random = new Random(2629);
+
+        for (int i = 0; i < randomCount; i++) {
+            check(randomMessage(random));
+        }
+
+        System.out.println(">>> " + passed + " messages parsed like the regex, " + failed + " differences");
+
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * build a random message with words of the protocol and random chars
+     * @param random
+     * @return
+    */
+    private static String randomMessage(Random random) {
+        StringBuilder builder = new StringBuilder();
+
+        if (random.nextInt(3) == 0) {
+            return randomPuzzle(random);
+        }
+
+        int parts = random.nextInt(6);
+
+        for (int i = 0; i < parts; i++) {
+            if (random.nextBoolean()) {
+                builder.append(WORDS[random.nextInt(WORDS.length)]);
+            } else {
+                builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+
+            if (random.nextInt(3) == 0) {
+                builder.append(' ');
+            }
+        }
+
+        switch (random.nextInt(4)) {
+            case 0:
+                builder.append("\r\n\r\n");
+                break;
+            case 1:
+                builder.append("\r\n");
+                break;
+            case 2:
+                builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                break;
+            default:
+                break;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * build a random grid, the cells are mostly valid
+     * and the status line is one of the protocol or a random word
+     * @param random
+     * @return
+    */
+    private static String randomPuzzle(Random random) {
+        StringBuilder builder = new StringBuilder();
+        char[] cells = {'X', 'x', 'O', 'o', ' ', ' ', ' ', '\t', '\r', '\n', '\u0001', 'A'};
+        String[] status = {"", "", "X WON\r\n", "o WON\r\n", "DRAW\r\n", "OPPONENT QUIT\r\n", "o TIMEOUT\r\n", "X LOST\r\n", "DRAW", " DRAW\r\n"};
+        String[] endings = {"", "\r\n", "\r\n\r\n", "\n", "\r", "\u0085", " "};
+
+        for (int row = 0; row < 3; row++) {
+            for (int i = 0; i < 3; i++) {
+                builder.append(cells[random.nextInt(random.nextInt(10) == 0 ? cells.length : 5)]);
+            }
+
+            builder.append("\r\n");
+        }
+
+        builder.append(status[random.nextInt(status.length)]);
+        builder.append(endings[random.nextInt(endings.length)]);
+
+        return builder.toString();
+    }
+
+    /**
+     * parse the message with both parsers and compare the results
+     * @param message
+    */
+    private static void check(String message) {
+        String expected = parseWithRegex(message);
+        String actual;
+
+        try {
+            actual = describe(new TictactoeResponse(message));
+        } catch (TictactoeBadResponseException e) {
+            actual = "BAD";
+        }
+
+        if (expected.equals(actual)) {
+            passed++;
+        } else {
+            failed++;
+            System.out.println("[FAIL] " + escape(message));
+            System.out.println("       regex:  " + escape(expected));
+            System.out.println("       parser: " + escape(actual));
+        }
+    }
+
+    /**
+     * describe the result of the new parser
+     * @param response
+     * @return
+    */
+    private static String describe(TictactoeResponse response) {
+        List<String> params = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+
+        for (int i = 0; i < response.getLength(); i++) {
+            params.add(response.get(i));
+        }
+
+        for (char[] line : response.getLines()) {
+            lines.add(new String(line));
+        }
+
+        return response.getCommand() + " " + params + " " + lines;
+    }
+
+    /**
+     * the parser of TictactoeResponse before it was written without regex
+     * @param data
+     * @return the description of the result or BAD
+    */
+    private static String parseWithRegex(String data) {
+        String command;
+        List<String> params = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+
+        Matcher commandMatcher = COMMAND_REGEX.matcher(data);
+        Matcher puzzleMatcher = PUZZLE_REGEX.matcher(data);
+
+        if (puzzleMatcher.find()) {
+            command = "PUZZLE";
+            int lineCount = 0;
+
+            for (String part : data.split("\r\n")) {
+                if (lineCount < 3) {
+                    lines.add(part);
+                } else {
+                    for (String item : part.trim().split("\\s+")) {
+                        params.add(item.trim());
+                    }
+                }
+
+                lineCount++;
+            }
+        } else if (commandMatcher.find()) {
+            StringBuilder builder = new StringBuilder();
+
+            for (int index = 1; index <= 5; index++) {
+                String group = commandMatcher.group(index);
+                if (group != null) {
+                    if (index > 3) {
+                        params.add(group.trim());
+                    } else {
+                        builder.append(group.trim()).append(" ");
+                    }
+                }
+            }
+
+            command = builder.toString().trim();
+        } else {
+            return "BAD";
+        }
+
+        return command.toUpperCase() + " " + params + " " + lines;
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder();
+
+        for (char c : text.toCharArray()) {
+            if (c == '\r') {
+                builder.append("\\r");
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c < ' ' || c > '~') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.length() > 120 ? builder.substring(0, 120) + "..." : builder.toString();
+    }
+}
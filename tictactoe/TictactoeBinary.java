@@ -0,0 +1,153 @@
+/**
+ * TictactoeBinary is the compact variant of the protocol
+ * a client choose it by sending the byte MAGIC first, then
+ * every request and every reply of the connection is binary
+ * (the magic can not be the first byte of a text message, it is not ASCII)
+ *
+ * requests, the first byte is the opcode:
+ *  START BOT     0x01 arg   bit 0 the player (0 X, 1 O), bits 1-2 the bot (0 R, 1 H, 2 P)
+ *  START PLAYER  0x02
+ *  PUT           0x03 row col   (signed bytes)
+ *  UPDATE        0x04
+ *  QUIT          0x05
+ *  PUSH          0x06 on    1 PUSH ON, 0 PUSH OFF
+ *  UPDATE WAIT   0x07 moves UPDATE <moves>, wait until the grid has another number of moves
+ * an unknown opcode is a request of one byte which is answered by WRONG
+ *
+ * replies:
+ *  GRID    0x10 b1 b2 b3   the 18 bits of the Bitboard and the status of the game
+ *                          b1 = status << 2 | bits 16-17, b2 = bits 8-15, b3 = bits 0-7
+ *                          status: 0 running, 1 X WON, 2 O WON, 3 DRAW, 4 OPPONENT QUIT,
+ *                          5 X TIMEOUT, 6 O TIMEOUT
+ *  PLAYER  0x11 type       0 X, 1 O
+ *  the other fixed replies are one byte (see TictactoeReply)
+ *
+ * a move cost 3 bytes and its reply 4 bytes, against about 10 and 17 to 32
+ * in the text protocol, and the request is decoded without any parsing
+*/
+public abstract class TictactoeBinary {
+    /**
+     * first byte sent by a client which use the binary protocol
+    */
+    public static final byte MAGIC = (byte) 0xB7;
+
+    public static final byte START_BOT = 0x01;
+
+    public static final byte START_PLAYER = 0x02;
+
+    public static final byte PUT = 0x03;
+
+    public static final byte UPDATE = 0x04;
+
+    public static final byte QUIT = 0x05;
+
+    public static final byte PUSH = 0x06;
+
+    public static final byte UPDATE_WAIT = 0x07;
+
+    public static final byte GRID = 0x10;
+
+    public static final byte PLAYER = 0x11;
+
+    public static final int STATUS_RUNNING = 0;
+
+    public static final int STATUS_X_WON = 1;
+
+    public static final int STATUS_O_WON = 2;
+
+    public static final int STATUS_DRAW = 3;
+
+    public static final int STATUS_OPPONENT_QUIT = 4;
+
+    public static final int STATUS_X_TIMEOUT = 5;
+
+    public static final int STATUS_O_TIMEOUT = 6;
+
+    /**
+     * params of the requests, so decoding a request does not create strings
+    */
+    private static final String[] PLAYERS = {"X", "O"};
+
+    private static final String[] BOTS = {"R", "H", "P", "?"};
+
+    private static final String[] NUMBERS = new String[256];
+
+    private static final String[] NO_PARAMS = {};
+
+    static {
+        for (int i = 0; i < NUMBERS.length; i++) {
+            NUMBERS[i] = Integer.toString((byte) i);
+        }
+    }
+
+    /**
+     * return the length of the request which start with this opcode
+     * @param opcode
+     * @return
+    */
+    public static int requestLength(byte opcode) {
+        switch (opcode) {
+            case START_BOT:
+            case PUSH:
+            case UPDATE_WAIT:
+                return 2;
+            case PUT:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * build the request of a complete binary frame
+     * the result is the same than the text request, so the
+     * server handle both protocols with the same code
+     * an unknown opcode give an empty command
+     * @param frame
+     * @return
+    */
+    public static TictactoeResponse toResponse(byte[] frame) {
+        switch (frame[0]) {
+            case START_BOT:
+                // the bits which are not used must be 0
+                if ((frame[1] & ~0x07) != 0) {
+                    return new TictactoeResponse("START BOT", new String[] {"?"});
+                }
+
+                return new TictactoeResponse("START BOT", new String[] {PLAYERS[frame[1] & 1], BOTS[(frame[1] >> 1) & 3]});
+            case START_PLAYER:
+                return new TictactoeResponse("START PLAYER", NO_PARAMS);
+            case PUT:
+                return new TictactoeResponse("PUT", new String[] {NUMBERS[frame[1] & 0xFF], NUMBERS[frame[2] & 0xFF]});
+            case UPDATE:
+                return new TictactoeResponse("UPDATE", NO_PARAMS);
+            case UPDATE_WAIT:
+                return new TictactoeResponse("UPDATE", new String[] {NUMBERS[frame[1] & 0xFF]});
+            case QUIT:
+                return new TictactoeResponse("QUIT", NO_PARAMS);
+            case PUSH:
+                if (frame[1] == 0 || frame[1] == 1) {
+                    return new TictactoeResponse(frame[1] == 1 ? "PUSH ON" : "PUSH OFF", NO_PARAMS);
+                }
+
+                return new TictactoeResponse("PUSH", new String[] {"?"});
+            default:
+                return new TictactoeResponse("", NO_PARAMS);
+        }
+    }
+
+    /**
+     * encode the grid of a game
+     * @param board the Bitboard of the game
+     * @param status one of the STATUS constants
+     * @return
+    */
+    public static byte[] encodeGrid(int board, int status) {
+        return new byte[] {
+            GRID,
+            (byte) ((status << 2) | ((board >>> 16) & 0x03)),
+            (byte) (board >>> 8),
+            (byte) board
+        };
+    }
+}
@@ -1,10 +1,9 @@
 public abstract class TictactoeConst {
     /**
-     * The port where the server is running
-     * In a real-world application, this would be configurable
-     * For simplicity, we assume the server is always running on this port
+     * The port where the server is running (2629 by default)
+     *     java -Dtictactoe.port=2639 TictactoeServer
     */
-    public static final int PORT = 2629;
+    public static final int PORT = Integer.getInteger("tictactoe.port", 2629);
 
     /**
      * The host where the server is running
@@ -13,12 +12,106 @@ public abstract class TictactoeConst {
     */
     public static final String HOST = "localhost";
 
+    /**
+     * The port of the admin endpoint (metrics), only open on the loopback
+    */
+    public static final int ADMIN_PORT = PORT + 1;
+
     /*
      * How lotg to wait for a response from the server (in milliseconds)
      * before throwing a TictactoeTimeoutException
     */
     public static final int RESPONSE_TIMEOUT = 3000; 
 
+    /**
+     * How long an "UPDATE <moves>" can wait for a move (in milliseconds)
+     * after this time the server send the grid even if it has not changed
+    */
+    public static final int UPDATE_WAIT_TIMEOUT = 20000;
+
+    /**
+     * How long a client can stay connected without sending anything (in milliseconds)
+     * before the server close the connection, the limit depends on what the client do:
+     * not in a game, waiting for an opponent or playing
+    */
+    public static final int LOBBY_IDLE_TIMEOUT = 60000;
+
+    public static final int WAITING_IDLE_TIMEOUT = 300000;
+
+    public static final int GAME_IDLE_TIMEOUT = 120000;
+
+    /**
+     * Clocks of a game between two players (in milliseconds)
+     * a player has TURN_TIMEOUT to play each move and GAME_TIMEOUT for all
+     * his moves of the game, when one of them is over the player lose
+     * and the status of the grid is "X TIMEOUT" or "O TIMEOUT"
+     * they are given when the server starts (30 s and 5 min by default),
+     * a turnTimeout of 0 turns the clocks off
+     *     java -Dtictactoe.turnTimeout=10000 -Dtictactoe.gameTimeout=60000 TictactoeServer
+    */
+    public static final int TURN_TIMEOUT = Integer.getInteger("tictactoe.turnTimeout", 30000);
+
+    public static final int GAME_TIMEOUT = Integer.getInteger("tictactoe.gameTimeout", 300000);
+
+    /**
+     * Number of bytes which can wait to be sent to a client (in bytes)
+     * a client which does not read is then handled by SLOW_CONSUMER_POLICY
+     * a grid is at most 32 bytes, so this is far more than a normal client need
+     * both are given when the server starts
+     *     java -Dtictactoe.outboundHighWater=16384 -Dtictactoe.slowConsumerPolicy=DISCONNECT TictactoeServer
+    */
+    public static final int OUTBOUND_HIGH_WATER = Integer.getInteger("tictactoe.outboundHighWater", 65536);
+
+    public static final SlowConsumerPolicy SLOW_CONSUMER_POLICY = SlowConsumerPolicy.fromString(
+        System.getProperty("tictactoe.slowConsumerPolicy"), SlowConsumerPolicy.DROP_PUSHES);
+
+    /**
+     * Number of threads which write the messages that a client does not send
+     * itself (pushes, timeouts), see ServerClient (-Dtictactoe.writerThreads)
+    */
+    public static final int WRITER_THREADS = Math.max(1, Integer.getInteger("tictactoe.writerThreads", Math.max(2, Runtime.getRuntime().availableProcessors())));
+
+    /**
+     * Time that one write to a client may block (in milliseconds)
+     * a client which does not read for so long is disconnected, even if
+     * its pushes are dropped, so it cannot hold a writer (-Dtictactoe.writeTimeout)
+    */
+    public static final int WRITE_TIMEOUT = Math.max(1, Integer.getInteger("tictactoe.writeTimeout", 10000));
+
+    /**
+     * Limits by remote address (see RateLimiter), in actions per second
+     * and number of actions which can be done at once (burst)
+     * a connection over the limit is closed at once, a command over the limit
+     * is answered by TOO MANY REQUESTS without being parsed
+    */
+    public static final int CONNECTION_RATE = 20;
+
+    public static final int CONNECTION_BURST = 50;
+
+    public static final int COMMAND_RATE = 200;
+
+    public static final int COMMAND_BURST = 400;
+
+    /**
+     * true if the clients of this machine are limited too
+     * false by default so the tests and the LoadGenerator measure the server and not the limits
+     *     java -Dtictactoe.rateLimitLoopback=true TictactoeServer
+    */
+    public static final boolean RATE_LIMIT_LOOPBACK = Boolean.getBoolean("tictactoe.rateLimitLoopback");
+
+    /**
+     * How often the unused limits are removed (in milliseconds)
+    */
+    public static final int RATE_LIMIT_SWEEP = 10000;
+
+    /**
+     * Duration of a tick of the timer of the server (in milliseconds)
+     * and number of slots of the wheel (see TimingWheel)
+    */
+    public static final int TIMER_TICK = 100;
+
+    public static final int TIMER_SLOTS = 512;
+
     /**
      * End of message sequence
      * This is used to indicate the end of a message
@@ -26,4 +119,17 @@ public abstract class TictactoeConst {
      * For simplicity, we assume that the end of a message is always "\r\n"
     */
     public static final String END_OF_MESSAGE = "\r\n";
-}
+
+    /**
+     * Biggest text message accepted (in bytes, with its end of lines)
+     * the longest message of the protocol is a grid with its status (about 30 bytes)
+     * the bytes of a bigger message are not kept, it is answered by WRONG
+    */
+    public static final int MAX_FRAME_SIZE = 1024;
+
+    /**
+     * Size of the buffer used to read the channels in the NIO mode
+     * one buffer is shared by all the clients of an event loop
+    */
+    public static final int READ_BUFFER_SIZE = 8192;
+}
\ No newline at end of file
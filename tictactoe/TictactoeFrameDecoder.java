@@ -0,0 +1,224 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * TictactoeFrameDecoder cut a stream of bytes into messages of the protocol
+ * a message is always ended by an empty line ("\r\n\r\n")
+ * the decoder keep the part of a message which is not complete yet
+ * and wait for the next bytes to complete it
+ *
+ * it follow the same rules than BufferedReader.readLine()
+ * a line can be ended by "\r\n", "\r" or "\n" and each line is given
+ * back with "\r\n" so the TictactoeResponse regex still match
+ *
+ * the bytes are copied once in a buffer which is reused for all the messages
+ * so the only object created for a message is the String given to the listener
+ *
+ * a message can not be bigger than maxFrameSize: when it is reached the bytes
+ * already read are forgotten and the next ones are only scanned for the end
+ * of the message, then listener.onOversized() is called once, so a peer which
+ * never end its message can not make the buffer grow
+ *
+ * if the first byte of the connection is TictactoeBinary.MAGIC the client
+ * use the binary protocol, the frames are then cut with the length of
+ * their opcode and given already decoded to listener.onResponse()
+*/
+public class TictactoeFrameDecoder {
+    /**
+     * the message we are building, it is reused
+     * for all the messages of the connection
+    */
+    private byte[] frame = new byte[64];
+
+    /**
+     * number of bytes of the message in the buffer
+    */
+    private int length = 0;
+
+    /**
+     * true if nothing has been read on the current line
+     * an empty line end the message
+    */
+    private boolean emptyLine = true;
+
+    /**
+     * true if the last byte was a '\r'
+     * in this case a '\n' just after is the same end of line
+    */
+    private boolean lastWasReturn = false;
+
+    /**
+     * true once the first byte of the connection has been read
+    */
+    private boolean started = false;
+
+    /**
+     * true if the client use the binary protocol
+    */
+    private boolean binary = false;
+
+    /**
+     * biggest text message kept in the buffer
+    */
+    private final int maxFrameSize;
+
+    /**
+     * true while the bytes of a too big message are dropped
+    */
+    private boolean discarding = false;
+
+    public TictactoeFrameDecoder() {
+        this(TictactoeConst.MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param maxFrameSize biggest text message, with its end of lines
+    */
+    public TictactoeFrameDecoder(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Read the bytes and give each complete message to the listener
+     * the listener should handle its own errors, if it throws
+     * the rest of the bytes are not decoded
+     * the protocol only use ASCII so each byte is a char (ISO-8859-1)
+     * an invalid byte will be refused later by TictactoeResponse
+     * @param data
+     * @param offset
+     * @param length
+     * @param listener
+     * @throws TictactoeBadResponseException
+    */
+    public void decode(byte[] data, int offset, int length, ClientEventListener listener) throws TictactoeBadResponseException {
+        int end = offset + length;
+
+        if (!started && length > 0) {
+            started = true;
+
+            if (data[offset] == TictactoeBinary.MAGIC) {
+                binary = true;
+                offset++;
+            }
+        }
+
+        if (binary) {
+            decodeBinary(data, offset, end, listener);
+            return;
+        }
+
+        for (int i = offset; i < end; i++) {
+            byte c = data[i];
+
+            if (c == '\n' && lastWasReturn) {
+                // the end of line has already been counted with the '\r'
+                lastWasReturn = false;
+                continue;
+            }
+
+            lastWasReturn = (c == '\r');
+
+            if (c != '\r' && c != '\n') {
+                appendText(c);
+                emptyLine = false;
+                continue;
+            }
+
+            if (!emptyLine) {
+                appendText((byte) '\r');
+                appendText((byte) '\n');
+                emptyLine = true;
+            } else if (discarding) {
+                // the end of the too big message, the next message is read normally
+                discarding = false;
+                listener.onOversized();
+            } else if (this.length > 0) {
+                /**
+                 * an empty line after some lines is the end of the message
+                 * empty lines before a message are just ignored
+                */
+                appendEndOfLine();
+                String message = new String(frame, 0, this.length, StandardCharsets.ISO_8859_1);
+                this.length = 0;
+                listener.onEvent(message);
+            }
+        }
+    }
+
+    /**
+     * cut the binary requests, the opcode give the length of the frame
+     * @param data
+     * @param offset
+     * @param end
+     * @param listener
+     * @throws TictactoeBadResponseException
+    */
+    private void decodeBinary(byte[] data, int offset, int end, ClientEventListener listener) throws TictactoeBadResponseException {
+        for (int i = offset; i < end; i++) {
+            append(data[i]);
+
+            if (this.length == TictactoeBinary.requestLength(frame[0])) {
+                this.length = 0;
+                listener.onResponse(TictactoeBinary.toResponse(frame));
+            }
+        }
+    }
+
+    /**
+     * return true if the client use the binary protocol
+     * @return
+    */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * return true if a message has been started
+     * but is not complete yet
+     * @return
+    */
+    public boolean hasPendingData() {
+        return length > 0 || discarding;
+    }
+
+    /**
+     * add a byte to the text message, unless it is too big
+     * then the message is dropped until its end
+     * (an empty line needs 2 more bytes, they are counted here)
+     * @param c
+    */
+    private void appendText(byte c) {
+        if (discarding) {
+            return;
+        }
+
+        if (this.length + 2 >= maxFrameSize) {
+            discarding = true;
+            this.length = 0;
+            return;
+        }
+
+        append(c);
+    }
+
+    /**
+     * add a byte to the message, the buffer
+     * is doubled when it is full
+     * @param c
+    */
+    private void append(byte c) {
+        if (length == frame.length) {
+            frame = Arrays.copyOf(frame, frame.length * 2);
+        }
+
+        frame[length++] = c;
+    }
+
+    /**
+     * add "\r\n" to the message
+    */
+    private void appendEndOfLine() {
+        append((byte) '\r');
+        append((byte) '\n');
+    }
+}
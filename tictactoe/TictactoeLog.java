@@ -0,0 +1,231 @@
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * TictactoeLog is the logger of the server
+ * the handlers never write on the console: a message is put in a bounded
+ * ring buffer and a background thread prints it, if the buffer is full
+ * the message is dropped and the thread prints how many were lost
+ *
+ * the level is given by the property tictactoe.log (default INFO)
+ *     java -Dtictactoe.log=DEBUG TictactoeServer
+ *
+ * the messages under the level are not even put in the buffer, when building
+ * the message costs something the caller check isEnabled() first
+*/
+public abstract class TictactoeLog {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * number of messages the buffer can keep, a power of two
+    */
+    private static final int CAPACITY = 1 << 14;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * how long the printing thread sleeps when the buffer is empty (in nanoseconds)
+    */
+    private static final long IDLE_PARK = 5_000_000;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final AtomicReferenceArray<Entry> SLOTS = new AtomicReferenceArray<>(CAPACITY);
+
+    /**
+     * next slot given to a writer, a writer claim it with a CAS
+    */
+    private static final AtomicLong TAIL = new AtomicLong();
+
+    /**
+     * next slot to print, only changed by drain() under drainLock
+    */
+    private static volatile long head = 0;
+
+    private static final LongAdder DROPPED = new LongAdder();
+
+    /**
+     * the printing thread and flush() do not read the buffer at the same time
+    */
+    private static final ReentrantLock drainLock = new ReentrantLock();
+
+    private static volatile Level level = Level.INFO;
+
+    private static final Thread PRINTER;
+
+    /**
+     * a message waiting in the buffer, it is formatted by the printing thread
+    */
+    private static final class Entry {
+        private final long time = System.currentTimeMillis();
+
+        private final Level level;
+
+        private final String message;
+
+        private Entry(Level level, String message) {
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    static {
+        String property = System.getProperty("tictactoe.log");
+
+        if (property != null) {
+            try {
+                level = Level.valueOf(property.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("[Unknown log level " + property + ", using INFO]");
+            }
+        }
+
+        PRINTER = new Thread(TictactoeLog::drainLoop, "tictactoe-log");
+        PRINTER.setDaemon(true);
+        PRINTER.start();
+
+        // the last messages (for example why the server could not start) are not lost
+        Runtime.getRuntime().addShutdownHook(new Thread(TictactoeLog::flush, "tictactoe-log-flush"));
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isEnabled(Level wanted) {
+        return wanted.compareTo(level) >= 0 && wanted != Level.OFF;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    /**
+     * return the number of messages dropped because the buffer was full
+     * @return
+    */
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+
+    /**
+     * put the message in the buffer, never blocks
+     * @param wanted
+     * @param message
+    */
+    public static void log(Level wanted, String message) {
+        if (!isEnabled(wanted)) {
+            return;
+        }
+
+        while (true) {
+            long tail = TAIL.get();
+
+            if (tail - head >= CAPACITY) {
+                DROPPED.increment();
+                return;
+            }
+
+            if (TAIL.compareAndSet(tail, tail + 1)) {
+                SLOTS.set((int) (tail & MASK), new Entry(wanted, message));
+                return;
+            }
+        }
+    }
+
+    /**
+     * loop of the printing thread
+    */
+    private static void drainLoop() {
+        long reported = 0;
+
+        while (true) {
+            int printed = drain();
+
+            // the drops are reported once the buffer has some room again
+            long dropped = DROPPED.sum();
+
+            if (dropped != reported) {
+                System.err.println(TIME.format(LocalTime.now()) + " WARN  " + (dropped - reported) + " log messages dropped");
+                reported = dropped;
+            }
+
+            if (printed == 0) {
+                LockSupport.parkNanos(IDLE_PARK);
+            }
+        }
+    }
+
+    /**
+     * print the messages of the buffer until a slot is empty
+     * a slot can be claimed but not written yet, it will be printed next time
+     * @return the number of printed messages
+    */
+    private static int drain() {
+        int printed = 0;
+
+        drainLock.lock();
+        try {
+            long current = head;
+
+            while (true) {
+                int index = (int) (current & MASK);
+                Entry entry = SLOTS.get(index);
+
+                if (entry == null) {
+                    break;
+                }
+
+                SLOTS.set(index, null);
+                current++;
+                head = current;
+                printed++;
+
+                print(entry);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+
+        return printed;
+    }
+
+    private static void print(Entry entry) {
+        String time = TIME.format(LocalTime.ofInstant(Instant.ofEpochMilli(entry.time), ZoneId.systemDefault()));
+        String line = time + " " + String.format("%-5s", entry.level) + " " + entry.message;
+
+        if (entry.level.compareTo(Level.WARN) >= 0) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * print what is still in the buffer, used when the program stops
+    */
+    public static void flush() {
+        drain();
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TictactoeMetrics count what the server does, without any lock
+ * (LongAdder and LatencyHistogram) so the handlers can record
+ * on every message, the metrics are read by MetricsEndpoint
+ * in the text format of Prometheus
+ *
+ * - connections opened and closed
+ * - games started by type and alive games by type and state
+ * - commands by verb and the time spent to handle them
+ * - replies by kind (WRONG, NOT YOUR TURN...)
+*/
+public abstract class TictactoeMetrics {
+    /**
+     * commands with their own counter, the other ones are counted as OTHER
+    */
+    private static final String[] COMMANDS = {
+        "START BOT", "START PLAYER", "PUT", "UPDATE", "QUIT", "PUSH ON", "PUSH OFF", "OTHER"
+    };
+
+    private static final LongAdder[] COMMAND_COUNTS = new LongAdder[COMMANDS.length];
+
+    private static final LatencyHistogram[] COMMAND_DURATIONS = new LatencyHistogram[COMMANDS.length];
+
+    private static final LongAdder[] REPLY_COUNTS = new LongAdder[TictactoeReply.values().length];
+
+    private static final LongAdder CONNECTIONS_OPENED = new LongAdder();
+
+    private static final LongAdder CONNECTIONS_CLOSED = new LongAdder();
+
+    private static final LongAdder BOT_GAMES_STARTED = new LongAdder();
+
+    private static final LongAdder PLAYER_GAMES_STARTED = new LongAdder();
+
+    private static final LongAdder OUTBOUND_QUEUED_BYTES = new LongAdder();
+
+    private static final LongAdder PUSHES_DROPPED = new LongAdder();
+
+    private static final LongAdder SLOW_CONSUMERS = new LongAdder();
+
+    private static final LongAdder CONNECTIONS_REJECTED = new LongAdder();
+
+    private static final LongAdder COMMANDS_THROTTLED = new LongAdder();
+
+    /**
+     * limits of the buckets given to Prometheus, powers of two
+     * from 1 microsecond (2^10 ns) to 17 seconds (2^34 ns)
+    */
+    private static final int FIRST_BUCKET_POWER = 10;
+
+    private static final int LAST_BUCKET_POWER = 34;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMAND_COUNTS[i] = new LongAdder();
+            COMMAND_DURATIONS[i] = new LatencyHistogram();
+        }
+
+        for (int i = 0; i < REPLY_COUNTS.length; i++) {
+            REPLY_COUNTS[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * return the index of the command in COMMANDS
+     * @param command
+     * @return
+    */
+    private static int indexOf(String command) {
+        for (int i = 0; i < COMMANDS.length - 1; i++) {
+            if (COMMANDS[i].equals(command)) {
+                return i;
+            }
+        }
+
+        return COMMANDS.length - 1;
+    }
+
+    public static void connectionOpened() {
+        CONNECTIONS_OPENED.increment();
+    }
+
+    public static void connectionClosed() {
+        CONNECTIONS_CLOSED.increment();
+    }
+
+    /**
+     * a connection has been closed at once because of the rate limit of its address
+    */
+    public static void connectionRejected() {
+        CONNECTIONS_REJECTED.increment();
+    }
+
+    /**
+     * a command has been refused because of the rate limit of its address
+    */
+    public static void commandThrottled() {
+        COMMANDS_THROTTLED.increment();
+    }
+
+    /**
+     * a new game has been registered
+     * @param bot true for a game against the bot
+    */
+    public static void gameStarted(boolean bot) {
+        (bot ? BOT_GAMES_STARTED : PLAYER_GAMES_STARTED).increment();
+    }
+
+    /**
+     * bytes added to (or removed from, if negative) the outbound queue of a client
+     * @param bytes
+    */
+    public static void outboundQueued(long bytes) {
+        OUTBOUND_QUEUED_BYTES.add(bytes);
+    }
+
+    /**
+     * a pushed grid has been dropped because the client was too slow
+    */
+    public static void pushDropped() {
+        PUSHES_DROPPED.increment();
+    }
+
+    /**
+     * a client has been disconnected because its outbound queue was full
+    */
+    public static void slowConsumerDisconnected() {
+        SLOW_CONSUMERS.increment();
+    }
+
+    /**
+     * a command has been handled
+     * @param command
+     * @param nanos time spent in the handler
+    */
+    public static void commandHandled(String command, long nanos) {
+        int index = indexOf(command);
+
+        COMMAND_COUNTS[index].increment();
+        COMMAND_DURATIONS[index].record(nanos);
+    }
+
+    /**
+     * a fixed reply has been sent
+     * @param reply
+    */
+    public static void replySent(TictactoeReply reply) {
+        REPLY_COUNTS[reply.ordinal()].increment();
+    }
+
+    /**
+     * write all the metrics in the text format of Prometheus
+     * @param games the alive games of the server
+     * @return
+    */
+    public static String toPrometheus(GameRegistry games) {
+        StringBuilder builder = new StringBuilder(8192);
+        long opened = CONNECTIONS_OPENED.sum();
+        long closed = CONNECTIONS_CLOSED.sum();
+
+        header(builder, "tictactoe_connections_opened_total", "counter", "Connections accepted by the server");
+        builder.append("tictactoe_connections_opened_total ").append(opened).append('\n');
+
+        header(builder, "tictactoe_connections_closed_total", "counter", "Connections closed by the server or the client");
+        builder.append("tictactoe_connections_closed_total ").append(closed).append('\n');
+
+        header(builder, "tictactoe_connections_active", "gauge", "Connections currently open");
+        builder.append("tictactoe_connections_active ").append(opened - closed).append('\n');
+
+        header(builder, "tictactoe_connections_rejected_total", "counter", "Connections closed at accept by the rate limit of their address");
+        builder.append("tictactoe_connections_rejected_total ").append(CONNECTIONS_REJECTED.sum()).append('\n');
+
+        header(builder, "tictactoe_commands_throttled_total", "counter", "Commands refused by the rate limit of their address");
+        builder.append("tictactoe_commands_throttled_total ").append(COMMANDS_THROTTLED.sum()).append('\n');
+
+        header(builder, "tictactoe_games_started_total", "counter", "Games started by type");
+        builder.append("tictactoe_games_started_total{type=\"bot\"} ").append(BOT_GAMES_STARTED.sum()).append('\n');
+        builder.append("tictactoe_games_started_total{type=\"player\"} ").append(PLAYER_GAMES_STARTED.sum()).append('\n');
+
+        header(builder, "tictactoe_games_active", "gauge", "Alive games by type and state");
+        for (GameState state : new GameState[] {GameState.WAITING, GameState.RUNNING}) {
+            String name = state.toString().toLowerCase();
+
+            builder.append("tictactoe_games_active{type=\"bot\",state=\"").append(name).append("\"} ")
+                .append(games.count(state, true)).append('\n');
+            builder.append("tictactoe_games_active{type=\"player\",state=\"").append(name).append("\"} ")
+                .append(games.count(state, false)).append('\n');
+        }
+
+        header(builder, "tictactoe_commands_total", "counter", "Commands handled by verb");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            builder.append("tictactoe_commands_total{command=\"").append(COMMANDS[i]).append("\"} ")
+                .append(COMMAND_COUNTS[i].sum()).append('\n');
+        }
+
+        header(builder, "tictactoe_replies_total", "counter", "Fixed replies sent by kind");
+        for (TictactoeReply reply : TictactoeReply.values()) {
+            builder.append("tictactoe_replies_total{reply=\"").append(reply.getText()).append("\"} ")
+                .append(REPLY_COUNTS[reply.ordinal()].sum()).append('\n');
+        }
+
+        header(builder, "tictactoe_command_duration_seconds", "histogram", "Time spent to handle a command");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            LatencyHistogram histogram = COMMAND_DURATIONS[i];
+            String label = "command=\"" + COMMANDS[i] + "\"";
+
+            for (int power = FIRST_BUCKET_POWER; power <= LAST_BUCKET_POWER; power++) {
+                builder.append("tictactoe_command_duration_seconds_bucket{").append(label)
+                    .append(",le=\"").append(seconds(1L << power)).append("\"} ")
+                    .append(histogram.countBelow(1L << power)).append('\n');
+            }
+
+            long count = histogram.getCount();
+
+            builder.append("tictactoe_command_duration_seconds_bucket{").append(label).append(",le=\"+Inf\"} ").append(count).append('\n');
+            builder.append("tictactoe_command_duration_seconds_sum{").append(label).append("} ").append(seconds(histogram.getSum())).append('\n');
+            builder.append("tictactoe_command_duration_seconds_count{").append(label).append("} ").append(count).append('\n');
+        }
+
+        header(builder, "tictactoe_command_duration_quantile_seconds", "gauge", "Quantiles of the time spent to handle a command since the start");
+        for (int i = 0; i < COMMANDS.length; i++) {
+            for (double quantile : QUANTILES) {
+                builder.append("tictactoe_command_duration_quantile_seconds{command=\"").append(COMMANDS[i])
+                    .append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(COMMAND_DURATIONS[i].valueAt(quantile))).append('\n');
+            }
+        }
+
+        header(builder, "tictactoe_outbound_queued_bytes", "gauge", "Bytes waiting in the outbound queues of all the clients");
+        builder.append("tictactoe_outbound_queued_bytes ").append(OUTBOUND_QUEUED_BYTES.sum()).append('\n');
+
+        header(builder, "tictactoe_pushes_dropped_total", "counter", "Pushed grids dropped because the client was too slow");
+        builder.append("tictactoe_pushes_dropped_total ").append(PUSHES_DROPPED.sum()).append('\n');
+
+        header(builder, "tictactoe_slow_consumer_disconnects_total", "counter", "Clients disconnected because their outbound queue was full");
+        builder.append("tictactoe_slow_consumer_disconnects_total ").append(SLOW_CONSUMERS.sum()).append('\n');
+
+        header(builder, "tictactoe_log_dropped_total", "counter", "Log messages dropped because the log buffer was full");
+        builder.append("tictactoe_log_dropped_total ").append(TictactoeLog.getDropped()).append('\n');
+
+        return builder.toString();
+    }
+
+    private static void header(StringBuilder builder, String name, String type, String help) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
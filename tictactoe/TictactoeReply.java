@@ -0,0 +1,82 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TictactoeReply contains the fixed replies of the server
+ * each reply has its text (without the end of message)
+ * and its bytes in both protocols (see TictactoeBinary)
+ *
+ * the bytes are encoded once when the class is loaded, sending a reply
+ * only write them, so the bad requests cost no allocation
+ * the arrays are shared, they must not be modified
+*/
+public enum TictactoeReply {
+    WRONG("WRONG", 0x20),
+    NO_GAME_MODE("NO GAME MODE", 0x21),
+    NOT_YOUR_TURN("NOT YOUR TURN", 0x22),
+    INVALID_RANGE("INVALID RANGE", 0x23),
+    CELL_OCCUPIED("CELL OCCUPIED", 0x24),
+    GAME_FINISHED("GAME FINISHED", 0x25),
+    PUSH_ON("PUSH ON", 0x26),
+    PUSH_OFF("PUSH OFF", 0x27),
+    TOO_MANY_REQUESTS("TOO MANY REQUESTS", 0x28),
+    PLAYER_X("PLAYER X", TictactoeBinary.PLAYER, 0),
+    PLAYER_O("PLAYER O", TictactoeBinary.PLAYER, 1);
+
+    private final String text;
+
+    /**
+     * the text and the empty line which end the message
+    */
+    private final byte[] textBytes;
+
+    private final byte[] binaryBytes;
+
+    private TictactoeReply(String text, int... binary) {
+        this.text = text;
+        this.textBytes = text.concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE)
+            .getBytes(StandardCharsets.US_ASCII);
+        this.binaryBytes = new byte[binary.length];
+
+        for (int i = 0; i < binary.length; i++) {
+            this.binaryBytes[i] = (byte) binary[i];
+        }
+    }
+
+    /**
+     * return the reply to START PLAYER
+     * @param type
+     * @return
+    */
+    public static TictactoeReply player(ClientType type) {
+        return type == ClientType.X ? PLAYER_X : PLAYER_O;
+    }
+
+    /**
+     * return the reply in the text protocol
+     * @return
+    */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * return the message of the text protocol
+     * @return bytes shared by all the clients, they must not be modified
+    */
+    public byte[] getTextBytes() {
+        return textBytes;
+    }
+
+    /**
+     * return the message of the binary protocol
+     * @return bytes shared by all the clients, they must not be modified
+    */
+    public byte[] getBinaryBytes() {
+        return binaryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -1,6 +1,4 @@
 import java.util.ArrayList;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /**
  * TictactoeResponse will represent a response from any side of the 
@@ -8,6 +6,12 @@ import java.util.regex.Matcher;
  * It will contain the command of the response if there is one
  * and the data of the response
  * and all the lines of the response if there is any 
+ *
+ * the message is read once from left to right, there is no regex
+ * the accepted messages are exactly the ones of the two regex of the
+ * protocol (see TestResponse which compare both):
+ * command: ^([A-Z]+)(\s+[A-Z]{2,})?(\s+[A-Z]{2,})?(\s+[A-Za-z]|\s+\-?[0-9]+)?(\s+[A-Za-z]|\s+\-?[0-9]+)?\s*\r\n(\r\n)?$
+ * puzzle:  ^([XxOo\s]{3}\r\n){3}(([XxOo] WON|[XxOo] TIMEOUT|DRAW|OPPONENT QUIT)\r\n)?(\r\n)?$
 */
 public class TictactoeResponse {
     // Command will contain the command of the response if there is one
@@ -16,11 +20,11 @@ public class TictactoeResponse {
     // Data will contain of part of a the first line of the response
     private final ArrayList<String> params = new ArrayList<>();
 
-    // Regex to validate the command if it matches the protocol
-    private final Pattern command_regex = Pattern.compile("^([A-Z]+)(\\s+[A-Z]{2,})?(\\s+[A-Z]{2,})?(\\s+[A-Za-z]|\\s+\\-?[0-9]+)?(\\s+[A-Za-z]|\\s+\\-?[0-9]+)?\\s*\\r\\n(\\r\\n)?$");
-
-    // Regex to validate the puzzle if it matches the protocol
-    private final Pattern puzzle_regex = Pattern.compile("^([XxOo\\s]{3}\\r\\n){3}(([XxOo] WON|DRAW|OPPONENT QUIT)\\r\\n)?(\\r\\n)?$");
+    // Status lines which can follow the grid of a puzzle
+    private static final String[] PUZZLE_STATUS = {
+        "X WON\r\n", "x WON\r\n", "O WON\r\n", "o WON\r\n", "DRAW\r\n", "OPPONENT QUIT\r\n",
+        "X TIMEOUT\r\n", "x TIMEOUT\r\n", "O TIMEOUT\r\n", "o TIMEOUT\r\n"
+    };
 
     /**
      * Lines will contain all the lines of the response each
@@ -29,10 +33,7 @@ public class TictactoeResponse {
     private ArrayList<char[]> lines = new ArrayList<>();
 
     public TictactoeResponse(String data) throws TictactoeBadResponseException {
-        Matcher command_matcher = this.command_regex.matcher(data);
-        Matcher puzzle_matcher = this.puzzle_regex.matcher(data);
-
-        if (puzzle_matcher.find()) {
+        if (isPuzzle(data)) {
             this.command = "PUZZLE";
 
             /**
@@ -40,47 +41,314 @@ public class TictactoeResponse {
              * and we take the first 3 lines as the lines of the puzzle
              * and the rest as the params of the puzzle
             */
-            int line_count = 0;
-
-            for (String part : data.split("\r\n")) {
-                if (line_count < 3) {
-                   lines.add(part.toCharArray());
-                } else {
-                    for (String item : part.trim().split("\\s+")) {
-                        params.add(item.trim());
-                    }
-                }
+            splitPuzzle(data);
+        } else if (!parseCommand(data)) {
+            throw new TictactoeBadResponseException();
+        }
+    }
+
+    /**
+     * build a response which is already decoded
+     * used by the binary protocol (see TictactoeBinary)
+     * @param command
+     * @param params
+    */
+    protected TictactoeResponse(String command, String[] params) {
+        this.command = command;
+
+        for (String param : params) {
+            this.params.add(param);
+        }
+    }
+
+    /**
+     * return true if the char is a space for the protocol
+     * it is the same set than \s in a java regex
+     * @param c
+     * @return
+    */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
 
-                line_count++;
+    /**
+     * return true if there is nothing after index
+     * or only one line terminator (like $ in a java regex)
+     * @param data
+     * @param index
+     * @return
+    */
+    private static boolean isEnd(String data, int index) {
+        int rest = data.length() - index;
+
+        if (rest == 0) {
+            return true;
+        }
+
+        if (rest == 2) {
+            return data.charAt(index) == '\r' && data.charAt(index + 1) == '\n';
+        }
+
+        if (rest == 1) {
+            char c = data.charAt(index);
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        return false;
+    }
+
+    /**
+     * return true if the data from index is the end of a command:
+     * some spaces ending with "\r\n" and maybe a last line terminator
+     * @param data
+     * @param index
+     * @return
+    */
+    private static boolean isCommandEnd(String data, int index) {
+        int length = data.length();
+        boolean terminatorRemoved = false;
+
+        // the spaces can be followed by one line terminator which is not a space
+        char last = length > index ? data.charAt(length - 1) : 0;
+        if (last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            length--;
+            terminatorRemoved = true;
+        }
+
+        for (int i = index; i < length; i++) {
+            if (!isSpace(data.charAt(i))) {
+                return false;
             }
-        } else if (command_matcher.find()) {
-            /**
-             * If the data is a single line command
-             * we split the data by spaces and we take
-             * the first part as the command and the rest
-             * as the params of the command
-            */
-            StringBuilder builder = new StringBuilder();
+        }
+
+        // "\r\n" must be just before the end, or before the last line terminator
+        if (endsWithReturn(data, index, length)) {
+            return true;
+        }
+
+        if (!terminatorRemoved && length > index) {
+            char c = data.charAt(length - 1);
+            return (c == '\n' || c == '\r') && endsWithReturn(data, index, length - 1);
+        }
+
+        return false;
+    }
+
+    /**
+     * return true if data[index..end[ ends with "\r\n"
+    */
+    private static boolean endsWithReturn(String data, int index, int end) {
+        return end - index >= 2 && data.charAt(end - 2) == '\r' && data.charAt(end - 1) == '\n';
+    }
+
+    /**
+     * read a single line command, the first word is always the command
+     * then come at most two other words of the command (START BOT)
+     * then at most two params: a single letter or a number
+     * @param data
+     * @return false if the data is not a valid command
+    */
+    private boolean parseCommand(String data) {
+        int length = data.length();
+        int index = 0;
+        int words = 0;
+        StringBuilder builder = new StringBuilder();
 
-            if (command_matcher.groupCount() != 6) {
-                throw new TictactoeBadResponseException();
+        while (index < length && data.charAt(index) >= 'A' && data.charAt(index) <= 'Z') {
+            index++;
+        }
+
+        if (index == 0) {
+            return false;
+        }
+
+        builder.append(data, 0, index);
+
+        while (!isCommandEnd(data, index)) {
+            int start = index;
+
+            while (index < length && isSpace(data.charAt(index))) {
+                index++;
+            }
+
+            if (index == start) {
+                return false;
             }
 
-            for(int command_index: new int[]{1,2,3,4,5}) {
-                String group = command_matcher.group(command_index);
-                if (group != null) {
-                    if (command_index > 3) {
-                        params.add(group.trim());
-                    } else {
-                        builder.append(group.trim()).append(" ");
-                    }
+            start = index;
+
+            while (index < length && !isSpace(data.charAt(index))) {
+                index++;
+            }
+
+            if (index == start) {
+                return false;
+            }
+
+            if (params.isEmpty() && words < 2 && isWord(data, start, index)) {
+                builder.append(' ').append(data, start, index);
+                words++;
+            } else if (params.size() < 2 && isParam(data, start, index)) {
+                params.add(data.substring(start, index));
+            } else {
+                return false;
+            }
+        }
+
+        this.command = builder.toString();
+        return true;
+    }
+
+    /**
+     * return true if data[start..end[ is a word of a command
+     * (at least two upper case letters)
+    */
+    private static boolean isWord(String data, int start, int end) {
+        if (end - start < 2) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = data.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * return true if data[start..end[ is a param of a command
+     * (a single letter or a number which can be negative)
+    */
+    private static boolean isParam(String data, int start, int end) {
+        char first = data.charAt(start);
+
+        if (end - start == 1 && ((first >= 'A' && first <= 'Z') || (first >= 'a' && first <= 'z'))) {
+            return true;
+        }
+
+        if (first == '-') {
+            start++;
+        }
+
+        if (start == end) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * return true if the data is a grid of 3 lines of 3 cells
+     * followed by an optional status line and an optional empty line
+     * @param data
+     * @return
+    */
+    private static boolean isPuzzle(String data) {
+        if (data.length() < 15) {
+            return false;
+        }
+
+        for (int row = 0; row < 3; row++) {
+            int start = row * 5;
+
+            for (int i = start; i < start + 3; i++) {
+                char c = data.charAt(i);
+                if (c != 'X' && c != 'x' && c != 'O' && c != 'o' && !isSpace(c)) {
+                    return false;
                 }
             }
 
-            this.command = builder.toString().trim();
-        } else {
-            throw new TictactoeBadResponseException();
+            if (data.charAt(start + 3) != '\r' || data.charAt(start + 4) != '\n') {
+                return false;
+            }
         }
+
+        if (isPuzzleEnd(data, 15)) {
+            return true;
+        }
+
+        for (String status : PUZZLE_STATUS) {
+            if (data.startsWith(status, 15)) {
+                return isPuzzleEnd(data, 15 + status.length());
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * return true if the data from index is an optional
+     * empty line and the end of the data
+    */
+    private static boolean isPuzzleEnd(String data, int index) {
+        return isEnd(data, index) || (data.startsWith("\r\n", index) && isEnd(data, index + 2));
+    }
+
+    /**
+     * split the puzzle by "\r\n", the first 3 lines are the grid
+     * the words of the next lines are the params (X WON, DRAW, ...)
+     * the empty lines at the end are ignored
+     * @param data
+    */
+    private void splitPuzzle(String data) {
+        int end = data.length();
+
+        while (end >= 2 && data.charAt(end - 2) == '\r' && data.charAt(end - 1) == '\n') {
+            end -= 2;
+        }
+
+        int start = 0;
+        int lineCount = 0;
+
+        while (start <= end && end > 0) {
+            int next = data.indexOf("\r\n", start);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+
+            if (lineCount < 3) {
+                lines.add(data.substring(start, next).toCharArray());
+            } else {
+                addWords(data.substring(start, next).trim());
+            }
+
+            lineCount++;
+            start = next + 2;
+        }
+    }
+
+    /**
+     * add the words of the line to the params
+     * a line without word add an empty param
+     * @param line
+    */
+    private void addWords(String line) {
+        int index = 0;
+        int length = line.length();
+
+        do {
+            int start = index;
+
+            while (index < length && !isSpace(line.charAt(index))) {
+                index++;
+            }
+
+            params.add(line.substring(start, index).trim());
+
+            while (index < length && isSpace(line.charAt(index))) {
+                index++;
+            }
+        } while (index < length);
     }
 
     /*
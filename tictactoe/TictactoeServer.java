@@ -1,40 +1,57 @@
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TictactoeServer {
     //Server socket
     private ServerSocket server;
 
-    //List of connected clients
-    private ArrayList<ServerClient> clients = new ArrayList<>();
+    /**
+     * Connected clients by id, the threads which accept and disconnect
+     * clients do not share a lock (see ClientRegistry)
+    */
+    private final ClientRegistry clients = new ClientRegistry();
 
     /**
-     * List of game, a game can be a game between two player or againts the bot
-     * Bot Game are always added at the biggining
-     * Dual Player Game are always added at the end
+     * Alive games, a game can be a game between two player or againts the bot
+     * a game is removed when it is terminated so the list does not grow forever
      */
-    private LinkedList<ServerGame> games = new LinkedList<>();
-
-    public TictactoeServer() throws Exception {
-        this.server = new ServerSocket(TictactoeConst.PORT);
-    }
+    private final GameRegistry games = new GameRegistry();
 
     /**
      * when a client want to play vs another client
-     * we have to search amount are avaible game if there is a place
-     * @return
-     */
-    private ServerGame searchAvailablePlace() {
-        for (ServerGame game : games) {
-            if (!game.hasBot() && game.getPlayerCount() < 2) {
-                return game;
-            }
-        }
+     * he is paired here in constant time, without looking at the list of games
+    */
+    private final WaitingRoom waitingRoom = new WaitingRoom();
+
+    /**
+     * executor which run the listening loop of each client
+     * null means each client is started on its own platform thread
+    */
+    private ExecutorService connectionExecutor;
+
+    /**
+     * The server socket is opened from a channel so the same
+     * socket can be used by the thread mode (run) and by the NIO mode (runNio)
+    */
+    private ServerSocketChannel serverChannel;
 
-        return null;
+    /**
+     * limits by remote address of the new connections and of the commands
+    */
+    private final RateLimiter connectionLimiter = new RateLimiter(TictactoeConst.CONNECTION_RATE, TictactoeConst.CONNECTION_BURST);
+
+    private final RateLimiter commandLimiter = new RateLimiter(TictactoeConst.COMMAND_RATE, TictactoeConst.COMMAND_BURST);
+
+    public TictactoeServer() throws Exception {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(TictactoeConst.PORT));
+        this.server = this.serverChannel.socket();
     }
 
     /**
@@ -44,275 +61,490 @@ public class TictactoeServer {
     private void disconnectClient(ServerClient client) {
         client.quit();
 
-        if (client.hasGame()) {
-            client.getGame().abortGame();
-        } 
-
+        leaveGame(client);
         client.removeListener();
 
-        synchronized(clients) {
-            clients.remove(client);
+        // a client is counted once even if it is disconnected twice
+        if (clients.remove(client)) {
+            TictactoeMetrics.connectionClosed();
+        }
+
+        TictactoeLog.debug("Disconnected Client");
+    }
+
+    /**
+     * the client leave his current game (disconnection or new game)
+     * the game is aborted if it was not ended and removed from the registry
+     * @param client
+    */
+    private void leaveGame(ServerClient client) {
+        if (!client.hasGame()) {
+            return;
+        }
+
+        ServerGame game = client.getGame();
+
+        // the opponent does not have to poll to know that he is alone
+        if (game.abortGame()) {
+            game.pushGrid(game.getOpponent(client));
+        }
+
+        waitingRoom.leave(game);
+
+        if (games.evict(game) && TictactoeLog.isEnabled(TictactoeLog.Level.DEBUG)) {
+            TictactoeLog.debug("Game " + game.getId() + " removed (" + games + ")");
+        }
+    }
+
+    /**
+     * add a client to the registry of connected clients
+     * and start to watch if it stays silent
+     * @param client
+    */
+    private void addClient(ServerClient client) {
+        clients.add(client);
+        watchIdle(client, client.getIdleLimit());
+    }
+
+    /**
+     * check the client after the delay (see checkIdle)
+     * there is only one timeout by client in the timer at a time
+     * @param client
+     * @param delayMillis
+    */
+    private void watchIdle(ServerClient client, long delayMillis) {
+        TimingWheel.SHARED.schedule(() -> checkIdle(client), delayMillis);
+    }
+
+    /**
+     * disconnect the client if it has been silent for longer than its limit
+     * else check it again when the limit would be reached, so a message
+     * only write the time of the client and never touch the timer
+     * @param client
+    */
+    private void checkIdle(ServerClient client) {
+        if (!clients.contains(client)) {
+            return;
+        }
+
+        long limit = client.getIdleLimit();
+        long idle = (System.nanoTime() - client.getLastActivity()) / 1_000_000;
+
+        if (idle < limit) {
+            watchIdle(client, limit - idle);
+            return;
         }
 
+        TictactoeLog.info("Client " + client.getId() + " idle for " + idle + " ms, disconnected");
 
-        System.out.println(">>> Disconnected Client");
+        // the timer must not wait on a client which does not read
+        client.abort();
+        disconnectClient(client);
+    }
+
+    /**
+     * Run the listening loop of each client on a virtual thread
+     * instead of a platform thread, a blocked virtual thread does not
+     * keep a system thread so we can have many more connected clients
+     * virtual threads exist since JDK 21, on an older JDK we use
+     * a cached pool of platform threads
+    */
+    public void useVirtualThreads() {
+        try {
+            this.connectionExecutor = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            TictactoeLog.warn("Virtual threads are not available, using a thread pool");
+            this.connectionExecutor = Executors.newCachedThreadPool();
+        }
     }
 
     private void initClient(ServerClient client) throws TictactoeBadResponseException {
-        client.listening((message) -> {
-            TictactoeResponse response = new TictactoeResponse(message);
-            switch (response.getCommand()) {
-                /**
-                 * The first case is when the client want to play vs the bot
-                 * we create a new game and set the client as player X or O
-                 * then we send the grid state to the client if he is player O
-                 * else we wait for the player O to connect
-                */
-                case "START BOT":
-                    if (response.getLength() == 1) {
-                        ClientType type = ClientType.fromString(response.get(0));
-                        if (type != null) {
-                            ServerGame game = new ServerGame();
-                    
-                            game.setAsBotgame();
-                            client.setGame(game);
-                            client.setClientType(type);
-                            try {
-                                if (type.equals(ClientType.X)) {
-                                    game.setPlayerX(client);
-                                } else {
-                                    game.setPlayerO(client);
-                                }
-
-                                client.sendMessageToClient(game.getGridState().concat(TictactoeConst.END_OF_MESSAGE));
-                                
-                                synchronized(games) {
-                                    games.add(game);
-                                    games.notifyAll();
-                                    System.out.println(">>> Bot Started");
-                                }
+        client.listening(new ClientEventListener() {
+            @Override
+            public void onEvent(String message) throws TictactoeBadResponseException {
+                if (admitCommand(client)) {
+                    handleRequest(client, new TictactoeResponse(message));
+                }
+            }
 
-                                return;
-                            } 
-                            catch (ServerGameException e) {
-                                // This should not happen if the code is correct
-                                // So it is not handled further
-                                System.err.println("[ServerGameException in START BOT]");
-                                return;
-                            }
-                            catch(ClientSendException e) {
-                                // This mean the client disconnected
-                                // We just stop the client
-                                disconnectClient(client);
-                                return;
+            /**
+             * the requests of the binary protocol are already decoded
+             * they are handled by the same code than the text ones
+            */
+            @Override
+            public void onResponse(TictactoeResponse response) throws TictactoeBadResponseException {
+                if (admitCommand(client)) {
+                    handleRequest(client, response);
+                }
+            }
+
+            /**
+             * the connection is lost, the client is removed even if its address
+             * is over the rate limit, so its opponent learns it and the game is aborted
+            */
+            @Override
+            public void onClosed() {
+                disconnectClient(client);
+            }
+        });
+    }
+
+    /**
+     * check the rate limit of the address of the client before the command
+     * is parsed, a refused command is answered by TOO MANY REQUESTS (already encoded)
+     * and not by WRONG, so the client knows it can send it again later
+     * @param client
+     * @return true if the command can be handled
+    */
+    private boolean admitCommand(ServerClient client) {
+        if (commandLimiter.tryAcquire(client.getAddress())) {
+            return true;
+        }
+
+        TictactoeMetrics.commandThrottled();
+
+        try {
+            client.sendReply(TictactoeReply.TOO_MANY_REQUESTS);
+        } catch (ClientSendException e) {
+            // the client is gone, his own connection will tell it to the server
+        }
+
+        return false;
+    }
+
+    /**
+     * handle a request of the client and record the time spent
+     * in the metrics of the command (see TictactoeMetrics)
+     * @param client
+     * @param response
+     * @throws TictactoeBadResponseException
+    */
+    private void handleRequest(ServerClient client, TictactoeResponse response) throws TictactoeBadResponseException {
+        long start = System.nanoTime();
+        client.touch(start);
+
+        try {
+            dispatchRequest(client, response);
+        } finally {
+            TictactoeMetrics.commandHandled(response.getCommand(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * handle a request of the client, the replies are sent
+     * in the protocol of the client (text or binary)
+     * @param client
+     * @param response
+     * @throws TictactoeBadResponseException
+    */
+    private void dispatchRequest(ServerClient client, TictactoeResponse response) throws TictactoeBadResponseException {
+        switch (response.getCommand()) {
+            /**
+             * The first case is when the client want to play vs the bot
+             * an optional second argument choose the bot: R random (default), H heuristic, P perfect
+             * we create a new game and set the client as player X or O
+             * then we send the grid state to the client if he is player O
+             * else we wait for the player O to connect
+            */
+            case "START BOT":
+                if (response.getLength() == 1 || response.getLength() == 2) {
+                    ClientType type = ClientType.fromString(response.get(0));
+                    BotStrategy bot = BotStrategy.fromString(response.getLength() == 2 ? response.get(1) : "R");
+
+                    if (type != null && bot != null) {
+                        ServerGame game = new ServerGame();
+
+                        leaveGame(client);
+                        game.setAsBotgame();
+                        game.setBotStrategy(bot);
+
+                        client.setGame(game);
+                        client.setClientType(type);
+                        try {
+                            if (type.equals(ClientType.X)) {
+                                game.setPlayerX(client);
+                            } else {
+                                game.setPlayerO(client);
                             }
+
+                            client.sendGrid(game);
+                            
+                            games.register(game);
+                            TictactoeMetrics.gameStarted(true);
+                            TictactoeLog.debug("Bot Started");
+
+                            return;
+                        } 
+                        catch (ServerGameException e) {
+                            // This should not happen if the code is correct
+                            // So it is not handled further
+                            TictactoeLog.error("[ServerGameException in START BOT]");
+                            return;
+                        }
+                        catch(ClientSendException e) {
+                            // This mean the client disconnected
+                            // We just stop the client
+                            disconnectClient(client);
+                            return;
                         }
                     }
+                }
 
-                    throw new TictactoeBadResponseException();
-                
+                throw new TictactoeBadResponseException();
+            
+            /**
+             * The second case is when the client want to play vs another player
+             * we search for an avaible game if there is one we set the client as player O
+             * else we create a new game and set the client as player X
+             * then we send the player type to the client
+             * if he is player O we send the grid state to the client
+             * else we wait for the player O to connect
+            */
+            case "START PLAYER":
                 /**
-                 * The second case is when the client want to play vs another player
-                 * we search for an avaible game if there is one we set the client as player O
-                 * else we create a new game and set the client as player X
-                 * then we send the player type to the client
-                 * if he is player O we send the grid state to the client
-                 * else we wait for the player O to connect
+                 * we check if the response is correct
+                 * it should be just "START PLAYER" with no argument
+                 * else we throw a bad response exception
                 */
-                case "START PLAYER":
-                    ServerGame game = searchAvailablePlace();
-                    StringBuilder resp = new StringBuilder("PLAYER ");
-
-                    /**
-                     * we check if the response is correct
-                     * it should be just "START PLAYER" with no argument
-                     * else we throw a bad response exception
-                    */
-                    if (response.getLength() != 0) {
-                        throw new TictactoeBadResponseException();
-                    }
+                if (response.getLength() != 0) {
+                    throw new TictactoeBadResponseException();
+                }
 
-                    try {
-                        if (game != null) {
-                            client.setClientType(ClientType.O);
-                            game.setPlayerO(client);
-                            resp.append(ClientType.O.toString());
-                        } else {
-                            game = new ServerGame();
-                            client.setClientType(ClientType.X);
-                            game.setPlayerX(client);
-                            resp.append(ClientType.X.toString());
+                try {
+                    ServerGame game = waitingRoom.join(client);
+
+                    // the game is added only once, by the player who created it
+                    if (!game.equals(client.getGame())) {
+                        leaveGame(client);
+
+                        if (client.getType().equals(ClientType.X)) {
+                            games.register(game);
+                            TictactoeMetrics.gameStarted(false);
                         }
+                    }
 
-                        resp.append(TictactoeConst.END_OF_MESSAGE);
-                        resp.append(TictactoeConst.END_OF_MESSAGE);
-                        
-                        synchronized(games) {
-                            games.add(game);
-                            client.setGame(game);
-                            games.notifyAll();
-                            client.sendMessageToClient(resp.toString());
-                            System.out.println(">>> A new player joined a game");
+                    client.setGame(game);
+                    client.sendPlayer(client.getType());
+                    TictactoeLog.debug("A new player joined a game");
+                    return;
+                } 
+                catch(ClientSendException e) {
+                    // This mean the client disconnected
+                    // We just stop the client
+                    disconnectClient(client);
+                    return;
+                }
+
+            /**
+             * The third case is when the client want to update his grid state
+             * we just send the grid state to the client
+             * if the client is not in a game we throw a bad response exception
+             * that will be catch below
+             * if the client disconnected we just stop the client
+             * that will be catch below
+            */
+            case "UPDATE":
+                if(client.hasGame()) {
+                    try{
+                        /**
+                         * "UPDATE <moves>" is a long poll, if the grid has still this number
+                         * of moves the request is parked in the game (see GridWaiter)
+                         * and the grid will be sent when the opponent plays
+                        */
+                        if (response.getLength() == 1) {
+                            int knownMoves = Integer.parseInt(response.get(0));
+
+                            if (client.getGame().waitForMove(client, knownMoves, TictactoeConst.UPDATE_WAIT_TIMEOUT)) {
+                                return;
+                            }
                         }
+
+                        TictactoeLog.debug("Update requested by client");
+                        client.sendGrid(client.getGame());
+                        return;
+                    } catch (NumberFormatException e) {
+                        throw new TictactoeBadResponseException();
+                    } catch(ClientSendException e) {
+                        // This mean the client disconnected
+                        // We just stop the client
+                        disconnectClient(client);
                         return;
-                    } 
-                    catch (ServerGameException e) {
-                        // This should not happen if the code is correct
-                        // So it is not handled further
-                        System.err.println("[ServerGameException in START PLAYER]");
                     }
-                    catch(ClientSendException e) {
+                } else if (response.getLength() == 0) {
+                    try {
+                        client.sendReply(TictactoeReply.NO_GAME_MODE);
+                        return;
+                    } catch (ClientSendException e) {
                         // This mean the client disconnected
                         // We just stop the client
                         disconnectClient(client);
                         return;
                     }
+                }
+                throw new TictactoeBadResponseException();
+            
+            /**
+             * PUSH ON: the grid is sent to the client each time his opponent plays
+             * PUSH OFF: the client has to ask for it with UPDATE (default)
+            */
+            case "PUSH ON":
+            case "PUSH OFF":
+                if (response.getLength() != 0) {
                     throw new TictactoeBadResponseException();
+                }
 
-                /**
-                 * The third case is when the client want to update his grid state
-                 * we just send the grid state to the client
-                 * if the client is not in a game we throw a bad response exception
-                 * that will be catch below
-                 * if the client disconnected we just stop the client
-                 * that will be catch below
-                */
-                case "UPDATE":
-                    if(client.hasGame()) {
-                        try{
-                            System.out.println(">>> Update requested by client");
-                            client.sendMessageToClient(client.getGame().getGridState().concat(TictactoeConst.END_OF_MESSAGE));
-                            return;
-                        } catch(ClientSendException e) {
-                            // This mean the client disconnected
-                            // We just stop the client
-                            disconnectClient(client);
-                            return;
+                try {
+                    boolean push = response.getCommand().equals("PUSH ON");
+
+                    client.setPush(push);
+                    client.sendReply(push ? TictactoeReply.PUSH_ON : TictactoeReply.PUSH_OFF);
+                    return;
+                } catch (ClientSendException e) {
+                    // This mean the client disconnected
+                    // We just stop the client
+                    disconnectClient(client);
+                    return;
+                }
+
+            /**
+             * The fourth case is when the client want to quit the game
+             * we disconnect the client from the server
+             * if the client is not in a game we just disconnect him
+             * if the client disconnected we just stop the client
+            */
+            case "QUIT":
+                disconnectClient(client);
+                TictactoeLog.debug("Quit requested by client");
+                break;
+            
+            /**
+             * The fifth case is when the client want to play a move
+             * we check if the client is in a game and if the command is correct
+             * if it is we play the move and send the result to the client
+             * if the client is not in a game or the command is incorrect
+             * we throw a bad response exception that will be catch below
+             * if the client disconnected we just stop the client
+             * that will be catch below
+            */
+            case "PUT":
+                if (response.getLength() == 2) {
+                    try {
+                        int x = Integer.parseInt(response.get(0));
+                        int y = Integer.parseInt(response.get(1));
+
+                        if (TictactoeLog.isEnabled(TictactoeLog.Level.DEBUG)) {
+                            TictactoeLog.debug("Player move requested: " + x + ":" + y);
                         }
-                    } else if (response.getLength() == 0) {
-                        try {
-                            client.sendMessageToClient("NO GAME MODE".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
-                            return;
-                        } catch (ClientSendException e) {
-                            // This mean the client disconnected
-                            // We just stop the client
-                            disconnectClient(client);
+
+                        /**
+                         * if the game has not started yet (only one player in the game)
+                         * we send a NO GAME MODE response to the client
+                         * and we return
+                        */
+                        if (!client.hasGame()) {
+                            client.sendReply(TictactoeReply.NO_GAME_MODE);
                             return;
                         }
-                    }
-                    throw new TictactoeBadResponseException();
-                
-                /**
-                 * The fourth case is when the client want to quit the game
-                 * we disconnect the client from the server
-                 * if the client is not in a game we just disconnect him
-                 * if the client disconnected we just stop the client
-                */
-                case "QUIT":
-                    disconnectClient(client);
-                    System.out.println(">>> Quit requested by client");
-                    break;
-                
-                /**
-                 * The fifth case is when the client want to play a move
-                 * we check if the client is in a game and if the command is correct
-                 * if it is we play the move and send the result to the client
-                 * if the client is not in a game or the command is incorrect
-                 * we throw a bad response exception that will be catch below
-                 * if the client disconnected we just stop the client
-                 * that will be catch below
-                */
-                case "PUT":
-                    if (response.getLength() == 2) {
-                        try {
-                            int x = Integer.parseInt(response.get(0));
-                            int y = Integer.parseInt(response.get(1));
-
-                            System.out.println(">>> Player move requested: " + x + ":" + y);
-
-                            /**
-                             * if the game has not started yet (only one player in the game)
-                             * we send a NO GAME MODE response to the client
-                             * and we return
-                            */
-                            if (!client.hasGame()) {
-                                client.sendMessageToClient("NO GAME MODE".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
-                                return;
-                            }
 
-                            StringBuilder result = new StringBuilder(client.getGame().play(client, x, y));
+                        ServerGame game = client.getGame();
+                        TictactoeReply refused = game.play(client, x, y);
+
+                        if (refused == null) {
+                            client.sendGrid(game);
+                        } else {
+                            client.sendReply(refused);
+                        }
 
-                            result.append(TictactoeConst.END_OF_MESSAGE);
-                            client.sendMessageToClient(result.toString());
+                        // the final grid has been sent, the server does not need the game anymore
+                        if (games.evict(game) && TictactoeLog.isEnabled(TictactoeLog.Level.DEBUG)) {
+                            TictactoeLog.debug("Game " + game.getId() + " finished (" + games + ")");
+                        }
 
+                        return;
+                    } catch (NumberFormatException e) {
+                        // If the parsing fail we throw a bad response exception
+                        // that will be catch below
+                        try {
+                            client.sendReply(TictactoeReply.WRONG);
                             return;
-                        } catch (NumberFormatException e) {
-                            // If the parsing fail we throw a bad response exception
-                            // that will be catch below
-                            try {
-                                client.sendMessageToClient("WRONG".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
-                                return;
-                            } catch (ClientSendException a) {
-                                // This mean the client disconnected
-                                // We just stop the client
-                                disconnectClient(client);
-                                return;
-                            }
-                        } catch (ClientSendException e) {
+                        } catch (ClientSendException a) {
                             // This mean the client disconnected
                             // We just stop the client
                             disconnectClient(client);
                             return;
                         }
-                    }
-
-                    throw new TictactoeBadResponseException();
-            
-                /**
-                 * If the command is not recognized we send a WRONG response to the client
-                 * if the client disconnected we just stop the client
-                */
-                default:
-                    try {
-                        client.sendMessageToClient("WRONG".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
-                        System.out.println(">>> Wrong command from client: " + response.getCommand());
-                        return;
                     } catch (ClientSendException e) {
                         // This mean the client disconnected
                         // We just stop the client
                         disconnectClient(client);
                         return;
                     }
-            }
-        });
-        client.start();
+                }
+
+                throw new TictactoeBadResponseException();
+        
+            /**
+             * If the command is not recognized we send a WRONG response to the client
+             * if the client disconnected we just stop the client
+            */
+            default:
+                try {
+                    client.sendReply(TictactoeReply.WRONG);
+
+                    if (TictactoeLog.isEnabled(TictactoeLog.Level.DEBUG)) {
+                        TictactoeLog.debug("Wrong command from client: " + response.getCommand());
+                    }
+
+                    return;
+                } catch (ClientSendException e) {
+                    // This mean the client disconnected
+                    // We just stop the client
+                    disconnectClient(client);
+                    return;
+                }
+        }
     }
 
     /**
      * Main server loop
      * We accept new client and create a new ServerClient for each of them
      * Then we init the client to listen for messages
-     * This method is synchronized to avoid multiple clients to be accepted at the same time
-     * This could lead to race conditions
+     * only the main thread accept clients, the registries are concurrent
+     * so nothing has to be locked here
     */
-    public synchronized void run() {
+    public void run() {
         while (true) {
             try {
                 Socket socketClient = server.accept();
+
+                // an address which opens too many connections does not get a thread
+                if (!connectionLimiter.tryAcquire(socketClient.getInetAddress())) {
+                    TictactoeMetrics.connectionRejected();
+                    socketClient.close();
+                    continue;
+                }
+
                 ServerClient client = new ServerClient(socketClient);
+                TictactoeMetrics.connectionOpened();
 
 
                 try {
                     initClient(client);
-                    synchronized(clients) {
-                        clients.add(client);
+                    addClient(client);
+
+                    if (connectionExecutor != null) {
+                        connectionExecutor.execute(client);
+                    } else {
+                        client.start();
                     }
                 } catch (TictactoeBadResponseException e) {
-                    System.err.println("[TictactoeBadResponseException in TictactoeServer.run()]");
-                    client.sendMessageToClient("WRONG".concat(TictactoeConst.END_OF_MESSAGE).concat(TictactoeConst.END_OF_MESSAGE));
+                    TictactoeLog.warn("[TictactoeBadResponseException in TictactoeServer.run()]");
+                    client.sendReply(TictactoeReply.WRONG);
                 }
 
-                System.out.println(">>> New client connected: ");
+                TictactoeLog.debug("New client connected");
 
             } catch (ClientSendException e) {
                 /**
@@ -320,37 +552,129 @@ public class TictactoeServer {
                  * cannot be read due to a bad format then we tried to send a WRONG message
                  * to the client but we failed to do so because the client have disconnected
                 */
-                System.err.println("[ClientSendException in TictactoeServer.run()]");
+                TictactoeLog.warn("[ClientSendException in TictactoeServer.run()]");
             } catch (ClientGetStreamException e) {
                 /**
                  * in this case the client have disconnected before we could get his stream
                  * so we just ignore it
                 */
-                System.err.println("[ClientGtStreamException in TictactoeServer.run()]");
+                TictactoeLog.warn("[ClientGtStreamException in TictactoeServer.run()]");
             } catch (TictactoeTimeoutException e) {
                 /**
                  * in this case the client have not sended any message in the alloted time
                  * so we just ignore it
                 */
-                System.err.println("[TictactoeTimeoutException in TictactoeServer.run()]");
+                TictactoeLog.warn("[TictactoeTimeoutException in TictactoeServer.run()]");
             } catch (IOException e) {
                 /**
                  * in this case the server socket have been closed
                  * so we just stop the server
                 */
-                System.err.println("[IOException in TictactoeServer.run()]");
+                TictactoeLog.error("[IOException in TictactoeServer.run()]");
             }
         }
     }
 
+    /**
+     * NIO server loop
+     * Instead of one thread per client, the accepted channels are given
+     * to a small number of event loops which watch all of them with a Selector
+     * the messages are handled by the same listener than in run()
+     * @param loopCount number of event loop threads
+    */
+    public void runNio(int loopCount) throws IOException {
+        ServerEventLoop[] loops = new ServerEventLoop[loopCount];
+
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new ServerEventLoop(i);
+            loops[i].start();
+        }
+
+        int next = 0;
+
+        while (true) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+
+                if (!connectionLimiter.tryAcquire(channel.socket().getInetAddress())) {
+                    TictactoeMetrics.connectionRejected();
+                    channel.close();
+                    continue;
+                }
+
+                ServerEventLoop loop = loops[next];
+                next = (next + 1) % loopCount;
+
+                NioServerClient client = new NioServerClient(channel, loop);
+                TictactoeMetrics.connectionOpened();
+
+                try {
+                    initClient(client);
+                    addClient(client);
+                    loop.register(client);
+                } catch (TictactoeBadResponseException e) {
+                    TictactoeLog.warn("[TictactoeBadResponseException in TictactoeServer.runNio()]");
+                    client.quit();
+                }
+            } catch (IOException e) {
+                /**
+                 * the accepted client is already gone
+                 * or the server socket have been closed
+                */
+                TictactoeLog.warn("[IOException in TictactoeServer.runNio()]");
+
+                if (!serverChannel.isOpen()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * java TictactoeServer          one thread per client
+     * java TictactoeServer virtual  one virtual thread per client (JDK 21)
+     * java TictactoeServer nio [n]  n event loops (default: one per processor)
+    */
     public static void main(String[] args) {
         try {
+            // the table of the perfect bot is computed now and not during the first game
+            TictactoeLog.info("Bot table ready (" + BotMoveTable.size() + " grids)");
+
             TictactoeServer tictactoeServer = new TictactoeServer();
-            System.out.println(">>> Server started on port " + TictactoeConst.PORT);
+            TictactoeLog.info("Server started on port " + TictactoeConst.PORT);
+            TictactoeLog.info(TictactoeConst.TURN_TIMEOUT <= 0 ? "Clocks off"
+                : "Clocks: " + TictactoeConst.TURN_TIMEOUT + " ms per turn, " + TictactoeConst.GAME_TIMEOUT + " ms per game");
+            TictactoeLog.info("Outbound queue: " + TictactoeConst.OUTBOUND_HIGH_WATER + " bytes, " + TictactoeConst.SLOW_CONSUMER_POLICY
+                + ", " + TictactoeConst.WRITER_THREADS + " writer threads, " + TictactoeConst.WRITE_TIMEOUT + " ms per write");
+
+            // the server can run without its metrics, for example if the admin port is taken
+            try {
+                new MetricsEndpoint(TictactoeConst.ADMIN_PORT, tictactoeServer.games).start();
+                TictactoeLog.info("Metrics on http://localhost:" + TictactoeConst.ADMIN_PORT + "/metrics");
+            } catch (IOException e) {
+                TictactoeLog.warn("Can't start the metrics endpoint: " + e.getMessage());
+            }
+
+            if (args.length > 0 && args[0].equalsIgnoreCase("nio")) {
+                int loopCount = Runtime.getRuntime().availableProcessors();
+
+                if (args.length > 1) {
+                    loopCount = Integer.parseInt(args[1]);
+                }
+
+                TictactoeLog.info("NIO mode with " + loopCount + " event loops");
+                tictactoeServer.runNio(loopCount);
+                return;
+            }
+
+            if (args.length > 0 && args[0].equalsIgnoreCase("virtual")) {
+                TictactoeLog.info("Virtual thread mode");
+                tictactoeServer.useVirtualThreads();
+            }
 
             tictactoeServer.run();
         } catch (Exception e) {
-            System.out.println(">>> Can't start server: " + e.getMessage());
+            TictactoeLog.error("Can't start server: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,261 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TimingWheel is the timer of the server, a hashed timing wheel:
+ * the time is cut in ticks and the timeouts are put in a circular array
+ * of slots by their tick, one thread move to the next slot at each tick
+ * and run the timeouts of the slot which have made enough turns
+ *
+ * adding or cancelling a timeout is O(1) and does not take any lock,
+ * there is no task or thread by timeout, so the server can watch
+ * every connection (idle clients, parked UPDATE) with the same thread
+ *
+ * a timeout runs at most one tick late, never early
+*/
+public class TimingWheel {
+    /**
+     * the timer shared by the whole server
+    */
+    public static final TimingWheel SHARED = new TimingWheel(TictactoeConst.TIMER_TICK, TictactoeConst.TIMER_SLOTS);
+
+    /**
+     * a task waiting in the wheel
+     * the timeouts of a slot are a doubly linked list, so a timeout
+     * is removed from its slot without going through the slot
+    */
+    public static final class Timeout {
+        /**
+         * the wheel which removes the timeout from its slot when it is cancelled
+        */
+        private final TimingWheel wheel;
+
+        /**
+         * null once the timeout is cancelled, so what the task
+         * references (a game, its players) can be collected at once
+        */
+        private volatile Runnable task;
+
+        private final long deadline;
+
+        /**
+         * number of turns of the wheel before the timeout runs
+         * only used by the thread of the wheel
+        */
+        private long rounds;
+
+        /**
+         * neighbours in the list of the slot, null when the timeout is not in a slot
+         * only used by the thread of the wheel
+        */
+        private Timeout prev;
+
+        private Timeout next;
+
+        private volatile boolean cancelled = false;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * the task will not run, the timeout is removed from its slot
+         * at the next tick by the thread of the wheel
+        */
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            task = null;
+            wheel.cancelledQueue.add(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickNanos;
+
+    private final int mask;
+
+    /**
+     * head of the list of each slot, the head is not a real timeout
+     * the lists are only used by the thread of the wheel
+    */
+    private final Timeout[] slots;
+
+    /**
+     * timeouts added since the last tick, the thread of the wheel
+     * put them in their slot so the slots are never shared
+    */
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+    /**
+     * timeouts cancelled since the last tick, the thread of the wheel
+     * remove them from their slot like it adds the new ones
+    */
+    private final ConcurrentLinkedQueue<Timeout> cancelledQueue = new ConcurrentLinkedQueue<>();
+
+    private final long start = System.nanoTime();
+
+    /**
+     * current tick, only used by the thread of the wheel
+    */
+    private long tick = 0;
+
+    /**
+     * @param tickMillis duration of a tick
+     * @param slotCount number of slots, rounded up to a power of two
+    */
+    public TimingWheel(long tickMillis, int slotCount) {
+        int size = Integer.highestOneBit(Math.max(slotCount, 1) * 2 - 1);
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = size - 1;
+        this.slots = new Timeout[size];
+
+        for (int i = 0; i < size; i++) {
+            Timeout head = new Timeout(this, null, 0);
+            head.prev = head;
+            head.next = head;
+            slots[i] = head;
+        }
+
+        Thread thread = new Thread(this::run, "tictactoe-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * run the task after the delay on the thread of the wheel
+     * the task must be short, it delays all the other timeouts
+     * @param task
+     * @param delayMillis
+     * @return the timeout, to cancel it
+    */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0)));
+        added.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            waitNextTick();
+            transferAdded();
+            removeCancelled();
+            expire(slots[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * sleep until the end of the current tick
+    */
+    private void waitNextTick() {
+        long end = start + (tick + 1) * tickNanos;
+        long now;
+
+        while ((now = System.nanoTime()) < end) {
+            LockSupport.parkNanos(end - now);
+        }
+    }
+
+    /**
+     * put the new timeouts in their slot
+     * a timeout which is already late goes in the current slot
+    */
+    private void transferAdded() {
+        Timeout timeout;
+
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            long target = (timeout.deadline - start) / tickNanos;
+
+            timeout.rounds = Math.max(target - tick, 0) / slots.length;
+            link(slots[(int) (Math.max(target, tick) & mask)], timeout);
+        }
+    }
+
+    /**
+     * remove the cancelled timeouts from their slot
+     * a timeout cancelled before it was put in a slot is not in any list
+    */
+    private void removeCancelled() {
+        Timeout timeout;
+
+        while ((timeout = cancelledQueue.poll()) != null) {
+            unlink(timeout);
+        }
+    }
+
+    /**
+     * run the timeouts of the slot which have no turn left
+     * the other ones stay for the next turns
+     * @param head
+    */
+    private void expire(Timeout head) {
+        Timeout timeout = head.next;
+
+        while (timeout != head) {
+            Timeout next = timeout.next;
+
+            if (timeout.rounds > 0 && !timeout.cancelled) {
+                timeout.rounds--;
+                timeout = next;
+                continue;
+            }
+
+            unlink(timeout);
+
+            Runnable task = timeout.task;
+
+            if (task != null && !timeout.cancelled) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // one bad task must not stop the timer of the whole server
+                    TictactoeLog.error("[RuntimeException in TimingWheel.run()] " + e);
+                }
+            }
+
+            timeout = next;
+        }
+    }
+
+    /**
+     * add the timeout at the end of the list of the slot
+     * @param head
+     * @param timeout
+    */
+    private static void link(Timeout head, Timeout timeout) {
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+    }
+
+    /**
+     * remove the timeout from its list, nothing happens if it is not in a list
+     * @param timeout
+    */
+    private static void unlink(Timeout timeout) {
+        if (timeout.next == null) {
+            return;
+        }
+
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+}
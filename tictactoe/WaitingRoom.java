@@ -0,0 +1,74 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * WaitingRoom pair the players who sent START PLAYER
+ * there is never more than one game waiting for an opponent:
+ * the next player always take the waiting game, so one slot is enough
+ * the slot is changed with compareAndSet, no lock and no scan of the games
+*/
+public class WaitingRoom {
+    /**
+     * the game of the player X waiting for an opponent
+     * null if nobody is waiting
+    */
+    private final AtomicReference<ServerGame> waiting = new AtomicReference<>();
+
+    /**
+     * Put the client in a two player game
+     * if a game is waiting the client join it as player O
+     * else we create a new game where the client is player X
+     * the type of the client is set before anyone else can see the game
+     * @param client
+     * @return the game of the client
+    */
+    public ServerGame join(ServerClient client) {
+        while (true) {
+            ServerGame game = waiting.get();
+
+            if (game == null) {
+                game = new ServerGame();
+                client.setClientType(ClientType.X);
+
+                try {
+                    game.setPlayerX(client);
+                } catch (ServerGameException e) {
+                    // a new game has no player X, this can not happen
+                    continue;
+                }
+
+                if (waiting.compareAndSet(null, game)) {
+                    return game;
+                }
+            } else if (game.hasPlayer(client)) {
+                // the client is already waiting in this game
+                return game;
+            } else if (waiting.compareAndSet(game, null)) {
+                client.setClientType(ClientType.O);
+
+                try {
+                    game.setPlayerO(client);
+                    return game;
+                } catch (ServerGameException e) {
+                    // the player X left before we joined, we try again
+                }
+            }
+        }
+    }
+
+    /**
+     * remove the game from the room if it is still waiting
+     * called when the player X disconnect before an opponent came
+     * @param game
+    */
+    public void leave(ServerGame game) {
+        waiting.compareAndSet(game, null);
+    }
+
+    /**
+     * return true if a player is waiting for an opponent
+     * @return
+    */
+    public boolean hasWaitingPlayer() {
+        return waiting.get() != null;
+    }
+}